@@ -0,0 +1,98 @@
+package com.craftinginterpreters.lox;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Front-end and back-end timings on the scripts in resources/workloads.
+ * Each stage gets its input prepared once in setup so it is measured alone.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LoxBenchmark {
+  @Param({"fib", "loop", "strings", "closures", "classes"})
+  public String workload;
+
+  private String source;
+  private TokenBuffer tokens;
+  private List<Stmt> statements;
+  private Chunk chunk;
+
+  @Setup(Level.Trial)
+  public void setup() throws IOException {
+    source = load(workload);
+    tokens = new Scanner(source).scan();
+    statements = new Parser(tokens).parse();
+    new Resolver().resolve(statements);
+    chunk = new Compiler().compile(statements);
+    if(Lox.hadError){
+      throw new IllegalStateException("workload " + workload + " does not compile");
+    }
+  }
+
+  @Benchmark
+  public TokenBuffer scan(){
+    return new Scanner(source).scan();
+  }
+
+  @Benchmark
+  public List<Stmt> parse(){
+    return new Parser(tokens).parse();
+  }
+
+  @Benchmark
+  public List<Stmt> resolve(){
+    // resolving again writes the same depth and slot on the nodes
+    new Resolver().resolve(statements);
+    return statements;
+  }
+
+  @Benchmark
+  public Interpreter interpret(){
+    Interpreter interpreter = new Interpreter();
+    interpreter.interpreter(statements);
+    return interpreter;
+  }
+
+  @Benchmark
+  public ClosureInterpreter lambdas(){
+    // compiling into lambdas is part of the cost, like Compiler is not for vm
+    ClosureInterpreter closures = new ClosureInterpreter();
+    closures.interpret(statements);
+    return closures;
+  }
+
+  @Benchmark
+  public VM vm(){
+    VM vm = new VM();
+    vm.interpret(chunk);
+    return vm;
+  }
+
+  private static String load(String name) throws IOException {
+    try(InputStream in = LoxBenchmark.class.getResourceAsStream("/workloads/" + name + ".jlox")){
+      if(in == null) throw new IOException("no workload " + name);
+      return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+    }
+  }
+}
@@ -0,0 +1,587 @@
+package com.craftinginterpreters.lox;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * On disk cache of resolved syntax trees, keyed by the SHA-256 of the source.
+ * A hit skips scanning, parsing and resolving: the depth, slot, frame size
+ * and numeric marks the Resolver wrote are stored with the nodes.
+ *
+ * The files go to .jlox-cache next to the script, or to the jlox.cache.dir
+ * system property. Bump FORMAT_VERSION whenever the trees or the
+ * resolver output change, old files are then ignored.
+ */
+class AstCache {
+  private static final int MAGIC = 0x4a4c4f58; // "JLOX"
+  private static final int FORMAT_VERSION = 3;
+
+  private static final TokenType[] TOKEN_TYPES = TokenType.values();
+
+  // node tags
+  private static final byte NULL = 0;
+  private static final byte ASSIGN = 1;
+  private static final byte BINARY = 2;
+  private static final byte FUNCTION = 3;
+  private static final byte CALL = 4;
+  private static final byte GET = 5;
+  private static final byte SET = 6;
+  private static final byte GROUPING = 7;
+  private static final byte LITERAL = 8;
+  private static final byte UNARY = 9;
+  private static final byte VARIABLE = 10;
+  private static final byte LOGICAL = 11;
+
+  private static final byte BLOCK = 20;
+  private static final byte CLASS = 21;
+  private static final byte BREAK = 22;
+  private static final byte EXPRESSION = 23;
+  private static final byte FUNCTION_STMT = 24;
+  private static final byte IF = 25;
+  private static final byte PRINT = 26;
+  private static final byte RETURN = 27;
+  private static final byte VAR = 28;
+  private static final byte WHILE = 29;
+
+  // literal tags
+  private static final byte NIL_VALUE = 0;
+  private static final byte NUMBER_VALUE = 1;
+  private static final byte STRING_VALUE = 2;
+  private static final byte BOOLEAN_VALUE = 3;
+
+  private AstCache(){}
+
+  // null when there is nothing usable for this source, the caller parses
+  static List<Stmt> load(Path script, String source){
+    byte[] hash = hash(source);
+    Path file = cacheFile(script, hash);
+    if(!Files.isRegularFile(file)) return null;
+
+    try(InputStream in = Files.newInputStream(file)){
+      return read(in, hash);
+    } catch (IOException | RuntimeException | StackOverflowError e) {
+      // a broken or foreign file is just a miss
+      return null;
+    }
+  }
+
+  static void store(Path script, String source, List<Stmt> statements){
+    byte[] hash = hash(source);
+    Path file = cacheFile(script, hash);
+    try {
+      Files.createDirectories(file.getParent());
+      // write next to it and move, a concurrent run never sees half a file
+      Path temp = Files.createTempFile(file.getParent(), "ast", ".tmp");
+      try {
+        try(OutputStream out = Files.newOutputStream(temp)){
+          write(out, hash, statements);
+        }
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+      } finally {
+        // gone already when the move worked
+        Files.deleteIfExists(temp);
+      }
+    } catch (IOException | UncheckedIOException e) {
+      // caching is best effort, the script still runs
+    }
+  }
+
+  static void write(OutputStream out, byte[] hash, List<Stmt> statements) throws IOException {
+    DataOutputStream data = new DataOutputStream(new BufferedOutputStream(out));
+    data.writeInt(MAGIC);
+    data.writeInt(FORMAT_VERSION);
+    data.write(hash);
+    try {
+      new Writer(data).writeStmts(statements);
+    } catch (UncheckedIOException e) {
+      throw e.getCause();
+    }
+    data.flush();
+  }
+
+  static List<Stmt> read(InputStream in, byte[] hash) throws IOException {
+    // in memory, so the reader knows how much is left for each count
+    byte[] bytes = in.readAllBytes();
+    DataInputStream data = new DataInputStream(new ByteArrayInputStream(bytes));
+    if(data.readInt() != MAGIC) return null;
+    if(data.readInt() != FORMAT_VERSION) return null;
+    byte[] stored = new byte[hash.length];
+    data.readFully(stored);
+    if(!Arrays.equals(stored, hash)) return null;
+    return new Reader(data, bytes.length).readStmts();
+  }
+
+  static byte[] hash(String source){
+    try {
+      return MessageDigest.getInstance("SHA-256").digest(source.getBytes(StandardCharsets.UTF_8));
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  private static Path cacheFile(Path script, byte[] hash){
+    String dir = System.getProperty("jlox.cache.dir");
+    Path base;
+    if(dir != null){
+      base = Path.of(dir);
+    } else {
+      Path parent = script.toAbsolutePath().getParent();
+      base = parent.resolve(".jlox-cache");
+    }
+
+    StringBuilder name = new StringBuilder();
+    for(byte b : hash){
+      name.append(String.format("%02x", b));
+    }
+    return base.resolve(name.append(".ast").toString());
+  }
+
+  private static class Writer implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
+    private final DataOutputStream out;
+
+    Writer(DataOutputStream out){
+      this.out = out;
+    }
+
+    void writeStmts(List<? extends Stmt> statements){
+      writeInt(statements.size());
+      for(Stmt stmt : statements){
+        writeStmt(stmt);
+      }
+    }
+
+    private void writeStmt(Stmt stmt){
+      if(stmt == null){
+        writeByte(NULL);
+        return;
+      }
+      stmt.accept(this);
+    }
+
+    private void writeExprs(List<Expr> exprs){
+      writeInt(exprs.size());
+      for(Expr expr : exprs){
+        writeExpr(expr);
+      }
+    }
+
+    private void writeExpr(Expr expr){
+      if(expr == null){
+        writeByte(NULL);
+        return;
+      }
+      expr.accept(this);
+      writeBoolean(expr.numeric);
+    }
+
+    private void writeToken(Token token){
+      try {
+        out.writeByte(token.type.ordinal());
+        out.writeUTF(token.lexeme);
+        writeValue(token.Literal);
+        out.writeInt(token.line);
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+    }
+
+    private void writeTokens(List<Token> tokens){
+      writeInt(tokens.size());
+      for(Token token : tokens){
+        writeToken(token);
+      }
+    }
+
+    private void writeValue(Object value){
+      try {
+        if(value == null){
+          out.writeByte(NIL_VALUE);
+        } else if(value instanceof Double){
+          out.writeByte(NUMBER_VALUE);
+          out.writeDouble((double)value);
+        } else if(value instanceof String){
+          out.writeByte(STRING_VALUE);
+          // writeUTF stops at 64k, long strings go as raw bytes
+          byte[] bytes = ((String)value).getBytes(StandardCharsets.UTF_8);
+          out.writeInt(bytes.length);
+          out.write(bytes);
+        } else {
+          out.writeByte(BOOLEAN_VALUE);
+          out.writeBoolean((boolean)value);
+        }
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+    }
+
+    private void writeByte(byte b){
+      try {
+        out.writeByte(b);
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+    }
+
+    private void writeInt(int i){
+      try {
+        out.writeInt(i);
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+    }
+
+    private void writeBoolean(boolean b){
+      try {
+        out.writeBoolean(b);
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+    }
+
+    @Override
+    public Void visitAssignExpr(Expr.Assign expr){
+      writeByte(ASSIGN);
+      writeToken(expr.name);
+      writeExpr(expr.value);
+      writeInt(expr.depth);
+      writeInt(expr.slot);
+      return null;
+    }
+
+    @Override
+    public Void visitBinaryExpr(Expr.Binary expr){
+      writeByte(BINARY);
+      writeExpr(expr.left);
+      writeToken(expr.operator);
+      writeExpr(expr.right);
+      return null;
+    }
+
+    @Override
+    public Void visitFunctionExpr(Expr.Function expr){
+      writeByte(FUNCTION);
+      writeTokens(expr.params);
+      writeStmts(expr.body);
+      writeInt(expr.slots);
+      return null;
+    }
+
+    @Override
+    public Void visitCallExpr(Expr.Call expr){
+      writeByte(CALL);
+      writeExpr(expr.callee);
+      writeToken(expr.paren);
+      writeExprs(expr.arguments);
+      return null;
+    }
+
+    @Override
+    public Void visitGetExpr(Expr.Get expr){
+      writeByte(GET);
+      writeExpr(expr.object);
+      writeToken(expr.name);
+      return null;
+    }
+
+    @Override
+    public Void visitSetExpr(Expr.Set expr){
+      writeByte(SET);
+      writeExpr(expr.object);
+      writeToken(expr.name);
+      writeExpr(expr.value);
+      return null;
+    }
+
+    @Override
+    public Void visitGroupingExpr(Expr.Grouping expr){
+      writeByte(GROUPING);
+      writeExpr(expr.expression);
+      return null;
+    }
+
+    @Override
+    public Void visitLiteralExpr(Expr.Literal expr){
+      writeByte(LITERAL);
+      writeValue(expr.value);
+      return null;
+    }
+
+    @Override
+    public Void visitUnaryExpr(Expr.Unary expr){
+      writeByte(UNARY);
+      writeToken(expr.operator);
+      writeExpr(expr.right);
+      return null;
+    }
+
+    @Override
+    public Void visitVariableExpr(Expr.Variable expr){
+      writeByte(VARIABLE);
+      writeToken(expr.name);
+      writeInt(expr.depth);
+      writeInt(expr.slot);
+      return null;
+    }
+
+    @Override
+    public Void visitLogicalExpr(Expr.Logical expr){
+      writeByte(LOGICAL);
+      writeExpr(expr.left);
+      writeToken(expr.operator);
+      writeExpr(expr.right);
+      return null;
+    }
+
+    @Override
+    public Void visitBlockStmt(Stmt.Block stmt){
+      writeByte(BLOCK);
+      writeStmts(stmt.statements);
+      return null;
+    }
+
+    @Override
+    public Void visitClassStmt(Stmt.Class stmt){
+      writeByte(CLASS);
+      writeToken(stmt.name);
+      writeStmts(stmt.methods);
+      return null;
+    }
+
+    @Override
+    public Void visitBreakStmt(Stmt.Break stmt){
+      writeByte(BREAK);
+      return null;
+    }
+
+    @Override
+    public Void visitExpressionStmt(Stmt.Expression stmt){
+      writeByte(EXPRESSION);
+      writeExpr(stmt.expression);
+      return null;
+    }
+
+    @Override
+    public Void visitFunctionStmt(Stmt.Function stmt){
+      writeByte(FUNCTION_STMT);
+      writeToken(stmt.name);
+      writeExpr(stmt.function);
+      return null;
+    }
+
+    @Override
+    public Void visitIfStmt(Stmt.If stmt){
+      writeByte(IF);
+      writeExpr(stmt.condition);
+      writeStmt(stmt.thenBranch);
+      writeStmt(stmt.elseBranch);
+      return null;
+    }
+
+    @Override
+    public Void visitPrintStmt(Stmt.Print stmt){
+      writeByte(PRINT);
+      writeExpr(stmt.expression);
+      return null;
+    }
+
+    @Override
+    public Void visitReturnStmt(Stmt.Return stmt){
+      writeByte(RETURN);
+      writeToken(stmt.keyword);
+      writeExpr(stmt.value);
+      return null;
+    }
+
+    @Override
+    public Void visitVarStmt(Stmt.Var stmt){
+      writeByte(VAR);
+      writeToken(stmt.name);
+      writeExpr(stmt.initializer);
+      return null;
+    }
+
+    @Override
+    public Void visitWhileStmt(Stmt.While stmt){
+      writeByte(WHILE);
+      writeExpr(stmt.condition);
+      writeStmt(stmt.body);
+      return null;
+    }
+  }
+
+  private static class Reader {
+    private final DataInputStream in;
+    private final int size;
+
+    Reader(DataInputStream in, int size){
+      this.in = in;
+      this.size = size;
+    }
+
+    // every entry takes at least a byte, a count or a length past the end
+    // of the file is corrupt and must not be allocated
+    private int readCount() throws IOException {
+      int count = in.readInt();
+      if(count < 0 || count > in.available()) throw new IOException("Bad count " + count);
+      return count;
+    }
+
+    // written after the body, each slot is a declaration somewhere in the file
+    private int readSlots() throws IOException {
+      int slots = in.readInt();
+      if(slots < 0 || slots > size) throw new IOException("Bad frame size " + slots);
+      return slots;
+    }
+
+    List<Stmt> readStmts() throws IOException {
+      int count = readCount();
+      List<Stmt> statements = new ArrayList<>(count);
+      for(int i = 0; i < count; i++){
+        statements.add(readStmt());
+      }
+      return statements;
+    }
+
+    private List<Stmt.Function> readFunctions() throws IOException {
+      int count = readCount();
+      List<Stmt.Function> functions = new ArrayList<>(count);
+      for(int i = 0; i < count; i++){
+        functions.add((Stmt.Function)readStmt());
+      }
+      return functions;
+    }
+
+    private List<Expr> readExprs() throws IOException {
+      int count = readCount();
+      List<Expr> exprs = new ArrayList<>(count);
+      for(int i = 0; i < count; i++){
+        exprs.add(readExpr());
+      }
+      return exprs;
+    }
+
+    private List<Token> readTokens() throws IOException {
+      int count = readCount();
+      List<Token> tokens = new ArrayList<>(count);
+      for(int i = 0; i < count; i++){
+        tokens.add(readToken());
+      }
+      return tokens;
+    }
+
+    private Token readToken() throws IOException {
+      TokenType type = TOKEN_TYPES[in.readUnsignedByte()];
+      String lexeme = in.readUTF();
+      Object literal = readValue();
+      int line = in.readInt();
+      return new Token(type, lexeme, literal, line);
+    }
+
+    private Object readValue() throws IOException {
+      byte tag = in.readByte();
+      switch(tag){
+        case NIL_VALUE: return null;
+        case NUMBER_VALUE: return in.readDouble();
+        case STRING_VALUE: {
+          byte[] bytes = new byte[readCount()];
+          in.readFully(bytes);
+          return new String(bytes, StandardCharsets.UTF_8);
+        }
+        case BOOLEAN_VALUE: return in.readBoolean();
+        default:
+          throw new IOException("Unknown value tag " + tag);
+      }
+    }
+
+    private Expr readExpr() throws IOException {
+      byte tag = in.readByte();
+      Expr expr;
+      switch(tag){
+        case NULL:
+          return null;
+        case ASSIGN: {
+          Expr.Assign assign = new Expr.Assign(readToken(), readExpr());
+          assign.depth = in.readInt();
+          assign.slot = in.readInt();
+          expr = assign;
+          break;
+        }
+        case BINARY:
+          expr = new Expr.Binary(readExpr(), readToken(), readExpr());
+          break;
+        case FUNCTION: {
+          Expr.Function function = new Expr.Function(readTokens(), readStmts());
+          function.slots = readSlots();
+          expr = function;
+          break;
+        }
+        case CALL:
+          expr = new Expr.Call(readExpr(), readToken(), readExprs());
+          break;
+        case GET:
+          expr = new Expr.Get(readExpr(), readToken());
+          break;
+        case SET:
+          expr = new Expr.Set(readExpr(), readToken(), readExpr());
+          break;
+        case GROUPING:
+          expr = new Expr.Grouping(readExpr());
+          break;
+        case LITERAL:
+          expr = new Expr.Literal(readValue());
+          break;
+        case UNARY:
+          expr = new Expr.Unary(readToken(), readExpr());
+          break;
+        case VARIABLE: {
+          Expr.Variable variable = new Expr.Variable(readToken());
+          variable.depth = in.readInt();
+          variable.slot = in.readInt();
+          expr = variable;
+          break;
+        }
+        case LOGICAL:
+          expr = new Expr.Logical(readExpr(), readToken(), readExpr());
+          break;
+        default:
+          throw new IOException("Unknown expression tag " + tag);
+      }
+      expr.numeric = in.readBoolean();
+      return expr;
+    }
+
+    private Stmt readStmt() throws IOException {
+      byte tag = in.readByte();
+      switch(tag){
+        case NULL: return null;
+        case BLOCK: return new Stmt.Block(readStmts());
+        case CLASS: return new Stmt.Class(readToken(), readFunctions());
+        case BREAK: return new Stmt.Break();
+        case EXPRESSION: return new Stmt.Expression(readExpr());
+        case FUNCTION_STMT: return new Stmt.Function(readToken(), (Expr.Function)readExpr());
+        case IF: return new Stmt.If(readExpr(), readStmt(), readStmt());
+        case PRINT: return new Stmt.Print(readExpr());
+        case RETURN: return new Stmt.Return(readToken(), readExpr());
+        case VAR: return new Stmt.Var(readToken(), readExpr());
+        case WHILE: return new Stmt.While(readExpr(), readStmt());
+        default:
+          throw new IOException("Unknown statement tag " + tag);
+      }
+    }
+  }
+}
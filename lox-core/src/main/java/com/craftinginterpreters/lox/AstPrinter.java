@@ -69,7 +69,48 @@ public class AstPrinter implements Expr.Visitor<String> {
 
   @Override
   public String visitVariableExpr(Variable expr) {
-    // TODO Auto-generated method stub
-    throw new UnsupportedOperationException("Unimplemented method 'visitVariableExpr'");
+    return expr.name.lexeme;
+  }
+
+  @Override
+  public String visitAssignExpr(Expr.Assign expr){
+    return parenthesize("= " + expr.name.lexeme, expr.value);
+  }
+
+  @Override
+  public String visitLogicalExpr(Expr.Logical expr){
+    return parenthesize(expr.operator.lexeme, expr.left, expr.right);
+  }
+
+  @Override
+  public String visitCallExpr(Expr.Call expr){
+    Expr[] exprs = new Expr[expr.arguments.size() + 1];
+    exprs[0] = expr.callee;
+    for(int i = 0; i < expr.arguments.size(); i++){
+      exprs[i + 1] = expr.arguments.get(i);
+    }
+    return parenthesize("call", exprs);
+  }
+
+  @Override
+  public String visitGetExpr(Expr.Get expr){
+    return parenthesize(". " + expr.name.lexeme, expr.object);
+  }
+
+  @Override
+  public String visitSetExpr(Expr.Set expr){
+    return parenthesize("= ." + expr.name.lexeme, expr.object, expr.value);
+  }
+
+  @Override
+  public String visitFunctionExpr(Expr.Function expr){
+    StringBuilder builder = new StringBuilder();
+    builder.append("(fun (");
+    for(int i = 0; i < expr.params.size(); i++){
+      if(i > 0) builder.append(" ");
+      builder.append(expr.params.get(i).lexeme);
+    }
+    builder.append(") ...)");
+    return builder.toString();
   }
 }
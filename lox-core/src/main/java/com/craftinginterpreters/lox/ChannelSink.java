@@ -0,0 +1,81 @@
+package com.craftinginterpreters.lox;
+
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+
+// OutputSink over a channel, lines are encoded into one direct buffer and
+// written when it fills up or on flush, so a print is not a syscall.
+// synchronized, scripts running on several threads can share stdout
+class ChannelSink implements OutputSink {
+  static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+  private static final String NEWLINE = System.lineSeparator();
+
+  static final ChannelSink STDOUT = new ChannelSink(
+      new FileOutputStream(FileDescriptor.out).getChannel(),
+      Integer.getInteger("jlox.output.buffer", DEFAULT_BUFFER_SIZE));
+
+  static {
+    Runtime.getRuntime().addShutdownHook(new Thread(STDOUT::flush));
+  }
+
+  private final WritableByteChannel channel;
+  private final ByteBuffer buffer;
+  private final CharsetEncoder encoder;
+
+  ChannelSink(WritableByteChannel channel, int bufferSize){
+    this.channel = channel;
+    // an encoder may need a few bytes for a single char
+    this.buffer = ByteBuffer.allocateDirect(Math.max(bufferSize, 16));
+    this.encoder = Charset.defaultCharset().newEncoder()
+        .onMalformedInput(CodingErrorAction.REPLACE)
+        .onUnmappableCharacter(CodingErrorAction.REPLACE);
+  }
+
+  @Override
+  public synchronized void println(String line){
+    encode(line);
+    encode(NEWLINE);
+  }
+
+  private void encode(String text){
+    CharBuffer chars = CharBuffer.wrap(text);
+    encoder.reset();
+    for(;;){
+      CoderResult result = encoder.encode(chars, buffer, true);
+      if(result.isOverflow()){
+        drain();
+      } else {
+        break;
+      }
+    }
+    while(encoder.flush(buffer).isOverflow()){
+      drain();
+    }
+  }
+
+  @Override
+  public synchronized void flush(){
+    drain();
+  }
+
+  private void drain(){
+    buffer.flip();
+    try {
+      while(buffer.hasRemaining()){
+        channel.write(buffer);
+      }
+    } catch (IOException e) {
+      // stdout went away (closed pipe), nothing left to print to
+    } finally {
+      buffer.clear();
+    }
+  }
+}
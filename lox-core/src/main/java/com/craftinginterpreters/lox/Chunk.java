@@ -0,0 +1,53 @@
+package com.craftinginterpreters.lox;
+
+import java.util.Arrays;
+
+/**
+ * A compiled sequence of instructions with its constant pool
+ * and a line table (one line per byte of code) for runtime errors.
+ */
+class Chunk {
+  byte[] code = new byte[64];
+  int[] lines = new int[64];
+  int count = 0;
+  Object[] constants = new Object[16];
+  int constantCount = 0;
+  // the indexes of the global instructions, set on the script's chunk
+  Environment.Globals globals;
+
+  // compiled function body, the VM turns it into a VMFunction with its upvalues
+  static class Function {
+    final String name;
+    final int arity;
+    final Chunk chunk;
+    // per upvalue: a local slot of the enclosing function, or one of its upvalues
+    final boolean[] upvalueLocal;
+    final int[] upvalueIndex;
+
+    Function(String name, int arity, Chunk chunk, boolean[] upvalueLocal, int[] upvalueIndex){
+      this.name = name;
+      this.arity = arity;
+      this.chunk = chunk;
+      this.upvalueLocal = upvalueLocal;
+      this.upvalueIndex = upvalueIndex;
+    }
+  }
+
+  void write(byte b, int line){
+    if(count == code.length){
+      code = Arrays.copyOf(code, count * 2);
+      lines = Arrays.copyOf(lines, count * 2);
+    }
+    code[count] = b;
+    lines[count] = line;
+    count++;
+  }
+
+  int addConstant(Object value){
+    if(constantCount == constants.length){
+      constants = Arrays.copyOf(constants, constantCount * 2);
+    }
+    constants[constantCount] = value;
+    return constantCount++;
+  }
+}
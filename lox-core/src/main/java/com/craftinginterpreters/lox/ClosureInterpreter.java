@@ -0,0 +1,584 @@
+package com.craftinginterpreters.lox;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import com.craftinginterpreters.lox.Interpreter.Completion;
+
+/**
+ * Third backend: each resolved node is turned once into a lambda that does
+ * only its own job, with the slot, the operator and the numeric path picked
+ * at compile time, then the lambdas are run. No accept/visit per node at run
+ * time. Same semantics as Interpreter, whose static helpers it shares.
+ */
+class ClosureInterpreter implements Expr.Visitor<ClosureInterpreter.Eval>, Stmt.Visitor<ClosureInterpreter.Exec> {
+  interface Eval {
+    Object eval(Environment env);
+  }
+
+  // for subtrees the resolver marked numeric, nothing is boxed inside
+  interface NumberEval {
+    double eval(Environment env);
+  }
+
+  interface Exec {
+    Completion exec(Environment env);
+  }
+
+  final Environment globals = new Environment();
+  private OutputSink out = OutputSink.stdout();
+  private Object returnValue = null;
+
+  ClosureInterpreter(){
+    Interpreter.defineNatives(globals);
+  }
+
+  void setOutput(OutputSink out){
+    this.out = out;
+  }
+
+  void interpret(List<Stmt> statements){
+    try {
+      run(compile(statements), globals);
+    } catch (RunTimeError error) {
+      Lox.runtimeError(error);
+    }
+  }
+
+  Exec[] compile(List<Stmt> statements){
+    Exec[] compiled = new Exec[statements.size()];
+    for(int i = 0; i < compiled.length; i++){
+      compiled[i] = statements.get(i).accept(this);
+    }
+    return compiled;
+  }
+
+  private static Completion run(Exec[] statements, Environment env){
+    for(Exec statement : statements){
+      Completion completion = statement.exec(env);
+      // break or return, skip the rest of the block
+      if(completion != Completion.NORMAL) return completion;
+    }
+    return Completion.NORMAL;
+  }
+
+  private Eval compile(Expr expr){
+    if(expr.numeric){
+      NumberEval number = number(expr);
+      return env -> Interpreter.box(number.eval(env));
+    }
+    return expr.accept(this);
+  }
+
+  private NumberEval number(Expr expr){
+    if(expr instanceof Expr.Literal){
+      double value = (double)((Expr.Literal)expr).value;
+      return env -> value;
+    }
+    if(expr instanceof Expr.Grouping){
+      return number(((Expr.Grouping)expr).expression);
+    }
+    if(expr instanceof Expr.Unary){
+      Expr.Unary unary = (Expr.Unary)expr;
+      if(unary.right.numeric){
+        NumberEval right = number(unary.right);
+        return env -> -right.eval(env);
+      }
+      Eval right = compile(unary.right);
+      Token operator = unary.operator;
+      return env -> {
+        Object value = right.eval(env);
+        Interpreter.checkNumberOperand(operator, value);
+        return -(double)value;
+      };
+    }
+
+    Expr.Binary binary = (Expr.Binary)expr;
+    Token operator = binary.operator;
+    if(!binary.left.numeric || !binary.right.numeric){
+      // both sides are evaluated before checking, like evaluateNumber
+      Eval left = compile(binary.left);
+      Eval right = compile(binary.right);
+      return env -> {
+        Object a = left.eval(env);
+        Object b = right.eval(env);
+        if(!(a instanceof Double) || !(b instanceof Double)){
+          throw new RunTimeError(operator, "Operand must be numbers");
+        }
+        return arithmetic(operator, (double)a, (double)b);
+      };
+    }
+
+    NumberEval left = number(binary.left);
+    NumberEval right = number(binary.right);
+    switch(operator.type){
+      case PLUS: return env -> left.eval(env) + right.eval(env);
+      case MINUS: return env -> left.eval(env) - right.eval(env);
+      case STAR: return env -> left.eval(env) * right.eval(env);
+      case SLASH:
+        return env -> {
+          double a = left.eval(env);
+          double b = right.eval(env);
+          Interpreter.checkZeroDivision(operator, b);
+          return a / b;
+        };
+      default:
+        return env -> arithmetic(operator, left.eval(env), right.eval(env));
+    }
+  }
+
+  private static double arithmetic(Token operator, double left, double right){
+    switch(operator.type){
+      case MINUS: return left - right;
+      case SLASH:
+        Interpreter.checkZeroDivision(operator, right);
+        return left / right;
+      case STAR: return left * right;
+      case PLUS: return left + right;
+      default:
+        break;
+    }
+    /// un reachable
+    return 0;
+  }
+
+  // STATEMENTS
+
+  @Override
+  public Exec visitBlockStmt(Stmt.Block stmt){
+    Exec[] statements = compile(stmt.statements);
+    return env -> run(statements, new Environment(env));
+  }
+
+  @Override
+  public Exec visitClassStmt(Stmt.Class stmt){
+    String name = stmt.name.lexeme;
+    List<String> names = new ArrayList<>();
+    List<Function> functions = new ArrayList<>();
+    for(Stmt.Function method : stmt.methods){
+      names.add(method.name.lexeme);
+      functions.add(function(method.function));
+    }
+    return env -> {
+      // the methods close over env, the class is defined after them
+      LoxCallable[] methods = new LoxCallable[functions.size()];
+      for(int i = 0; i < methods.length; i++){
+        methods[i] = new ClosureFunction(names.get(i), functions.get(i), env);
+      }
+      env.define(name, new LoxClass(stmt, methods));
+      return Completion.NORMAL;
+    };
+  }
+
+  @Override
+  public Exec visitBreakStmt(Stmt.Break stmt){
+    return env -> Completion.BREAK;
+  }
+
+  @Override
+  public Exec visitExpressionStmt(Stmt.Expression stmt){
+    Eval expression = compile(stmt.expression);
+    return env -> {
+      expression.eval(env);
+      return Completion.NORMAL;
+    };
+  }
+
+  @Override
+  public Exec visitFunctionStmt(Stmt.Function stmt){
+    String name = stmt.name.lexeme;
+    Function function = function(stmt.function);
+    return env -> {
+      env.define(name, new ClosureFunction(name, function, env));
+      return Completion.NORMAL;
+    };
+  }
+
+  @Override
+  public Exec visitIfStmt(Stmt.If stmt){
+    Eval condition = compile(stmt.condition);
+    Exec thenBranch = stmt.thenBranch.accept(this);
+    if(stmt.elseBranch == null){
+      return env -> Interpreter.isTruthy(condition.eval(env)) ? thenBranch.exec(env) : Completion.NORMAL;
+    }
+    Exec elseBranch = stmt.elseBranch.accept(this);
+    return env -> Interpreter.isTruthy(condition.eval(env)) ? thenBranch.exec(env) : elseBranch.exec(env);
+  }
+
+  @Override
+  public Exec visitPrintStmt(Stmt.Print stmt){
+    Eval expression = compile(stmt.expression);
+    return env -> {
+      out.println(Interpreter.stringify(expression.eval(env)));
+      return Completion.NORMAL;
+    };
+  }
+
+  @Override
+  public Exec visitReturnStmt(Stmt.Return stmt){
+    if(stmt.value == null){
+      return env -> {
+        returnValue = null;
+        return Completion.RETURN;
+      };
+    }
+    Eval value = compile(stmt.value);
+    return env -> {
+      returnValue = value.eval(env);
+      return Completion.RETURN;
+    };
+  }
+
+  @Override
+  public Exec visitVarStmt(Stmt.Var stmt){
+    String name = stmt.name.lexeme;
+    if(stmt.initializer == null){
+      return env -> {
+        env.define(name, null);
+        return Completion.NORMAL;
+      };
+    }
+    Eval initializer = compile(stmt.initializer);
+    return env -> {
+      env.define(name, initializer.eval(env));
+      return Completion.NORMAL;
+    };
+  }
+
+  @Override
+  public Exec visitWhileStmt(Stmt.While stmt){
+    Exec body = stmt.body.accept(this);
+    // no condition once the Optimizer saw a literal true
+    Eval condition = stmt.condition == null ? null : compile(stmt.condition);
+    return env -> {
+      while(condition == null || Interpreter.isTruthy(condition.eval(env))){
+        Completion completion = body.exec(env);
+        if(completion == Completion.BREAK) break;
+        // a return goes on up to the function
+        if(completion == Completion.RETURN) return completion;
+      }
+      return Completion.NORMAL;
+    };
+  }
+
+  // EXPRESSIONS
+
+  @Override
+  public Eval visitAssignExpr(Expr.Assign expr){
+    Eval value = compile(expr.value);
+    int slot = expr.slot;
+    int depth = expr.depth;
+    Token name = expr.name;
+    if(depth == -1){
+      Environment.Global global = globals.table().global(name.lexeme);
+      return env -> {
+        Object result = value.eval(env);
+        globals.assign(global, name, result);
+        return result;
+      };
+    }
+    if(depth == 0){
+      return env -> {
+        Object result = value.eval(env);
+        env.setSlot(slot, result);
+        return result;
+      };
+    }
+    return env -> {
+      Object result = value.eval(env);
+      env.assignAt(depth, slot, result);
+      return result;
+    };
+  }
+
+  @Override
+  public Eval visitBinaryExpr(Expr.Binary expr){
+    Token operator = expr.operator;
+    if(expr.left.numeric && expr.right.numeric){
+      // comparing two numeric subtrees, the operands are never boxed
+      NumberEval left = number(expr.left);
+      NumberEval right = number(expr.right);
+      switch(operator.type){
+        case GREATER: return env -> left.eval(env) > right.eval(env);
+        case LESS: return env -> left.eval(env) < right.eval(env);
+        case GREATER_EQUAL: return env -> left.eval(env) >= right.eval(env);
+        case LESS_EQUAL: return env -> left.eval(env) <= right.eval(env);
+        // same as Double.equals, like isEqual
+        case BANG_EQUAL: return env -> Double.compare(left.eval(env), right.eval(env)) != 0;
+        case EQUAL_EQUAL: return env -> Double.compare(left.eval(env), right.eval(env)) == 0;
+        default:
+          break;
+      }
+    }
+
+    Eval left = compile(expr.left);
+    Eval right = compile(expr.right);
+    switch(operator.type){
+      case PLUS:
+        return env -> {
+          Object a = left.eval(env);
+          Object b = right.eval(env);
+          if(a instanceof Double && b instanceof Double) return Interpreter.box((double)a + (double)b);
+          if(a instanceof String && b instanceof String) return LoxString.concat(a, b);
+          return Interpreter.binaryGeneric(expr, a, b);
+        };
+      case LESS:
+        return env -> {
+          Object a = left.eval(env);
+          Object b = right.eval(env);
+          if(a instanceof Double && b instanceof Double) return (double)a < (double)b;
+          return Interpreter.binaryGeneric(expr, a, b);
+        };
+      case LESS_EQUAL:
+        return env -> {
+          Object a = left.eval(env);
+          Object b = right.eval(env);
+          if(a instanceof Double && b instanceof Double) return (double)a <= (double)b;
+          return Interpreter.binaryGeneric(expr, a, b);
+        };
+      case GREATER:
+        return env -> {
+          Object a = left.eval(env);
+          Object b = right.eval(env);
+          if(a instanceof Double && b instanceof Double) return (double)a > (double)b;
+          return Interpreter.binaryGeneric(expr, a, b);
+        };
+      case GREATER_EQUAL:
+        return env -> {
+          Object a = left.eval(env);
+          Object b = right.eval(env);
+          if(a instanceof Double && b instanceof Double) return (double)a >= (double)b;
+          return Interpreter.binaryGeneric(expr, a, b);
+        };
+      case EQUAL_EQUAL: return env -> Interpreter.isEqual(left.eval(env), right.eval(env));
+      case BANG_EQUAL: return env -> !Interpreter.isEqual(left.eval(env), right.eval(env));
+      default:
+        return env -> Interpreter.binaryGeneric(expr, left.eval(env), right.eval(env));
+    }
+  }
+
+  @Override
+  public Eval visitFunctionExpr(Expr.Function expr){
+    Function function = function(expr);
+    return env -> new ClosureFunction(null, function, env);
+  }
+
+  @Override
+  public Eval visitCallExpr(Expr.Call expr){
+    Eval callee = compile(expr.callee);
+    Eval[] arguments = new Eval[expr.arguments.size()];
+    for(int i = 0; i < arguments.length; i++){
+      arguments[i] = compile(expr.arguments.get(i));
+    }
+    Token paren = expr.paren;
+    return env -> {
+      Object function = callee.eval(env);
+      // nothing is cached on the tree, other runtimes call their own functions from it
+      if(function instanceof ClosureFunction){
+        ClosureFunction target = (ClosureFunction)function;
+        if(target.function.arity == arguments.length){
+          Object[] values = new Object[target.function.slots];
+          for(int i = 0; i < arguments.length; i++){
+            values[i] = arguments[i].eval(env);
+          }
+          return target.call(null, values);
+        }
+      } else if(function instanceof NativeFunction && ((NativeFunction)function).arity() == arguments.length){
+        return callNative(paren, (NativeFunction)function, arguments, env);
+      }
+
+      Object[] values = new Object[arguments.length];
+      for(int i = 0; i < arguments.length; i++){
+        values[i] = arguments[i].eval(env);
+      }
+
+      if(!(function instanceof LoxCallable)){
+        throw new RunTimeError(paren, "Can only call functions and classes");
+      }
+      LoxCallable callable = (LoxCallable)function;
+      if(values.length != callable.arity()){
+        throw new RunTimeError(paren, "Expexted " + callable.arity() + " arguments but got " + values.length);
+      }
+      if(callable.frameSize() > values.length){
+        values = Arrays.copyOf(values, callable.frameSize());
+      }
+      return callable.call(null, values);
+    };
+  }
+
+  // the arguments go straight to the fixed arity method, no array
+  private static Object callNative(Token paren, NativeFunction function, Eval[] arguments, Environment env){
+    Object[] values = null;
+    Object a = null, b = null, c = null;
+    if(arguments.length > NativeFunction.MAX_FIXED){
+      values = new Object[arguments.length];
+      for(int i = 0; i < values.length; i++){
+        values[i] = arguments[i].eval(env);
+      }
+    } else {
+      if(arguments.length > 0) a = arguments[0].eval(env);
+      if(arguments.length > 1) b = arguments[1].eval(env);
+      if(arguments.length > 2) c = arguments[2].eval(env);
+    }
+    try {
+      switch(arguments.length){
+        case 0: return function.call0();
+        case 1: return function.call1(a);
+        case 2: return function.call2(a, b);
+        case 3: return function.call3(a, b, c);
+        default: return function.call(values);
+      }
+    } catch (RuntimeException error) {
+      throw NativeFunction.failed(paren, error);
+    }
+  }
+
+  @Override
+  public Eval visitGetExpr(Expr.Get expr){
+    Eval object = compile(expr.object);
+    InlineCache cache = expr.cache;
+    Token name = expr.name;
+    return env -> {
+      Object instance = object.eval(env);
+      if(instance instanceof LoxInstance){
+        return cache.get((LoxInstance)instance, name);
+      }
+      throw new RunTimeError(name, "Only instances have porperties");
+    };
+  }
+
+  @Override
+  public Eval visitSetExpr(Expr.Set expr){
+    Eval object = compile(expr.object);
+    Eval value = compile(expr.value);
+    InlineCache cache = expr.cache;
+    Token name = expr.name;
+    return env -> {
+      Object instance = object.eval(env);
+      if(!(instance instanceof LoxInstance)){
+        throw new RunTimeError(name, "Only instances have fields");
+      }
+      Object result = value.eval(env);
+      cache.set((LoxInstance)instance, name, result);
+      return result;
+    };
+  }
+
+  @Override
+  public Eval visitGroupingExpr(Expr.Grouping expr){
+    return compile(expr.expression);
+  }
+
+  @Override
+  public Eval visitLiteralExpr(Expr.Literal expr){
+    Object value = expr.value;
+    return env -> value;
+  }
+
+  @Override
+  public Eval visitUnaryExpr(Expr.Unary expr){
+    Eval right = compile(expr.right);
+    if(expr.operator.type == TokenType.BANG){
+      return env -> !Interpreter.isTruthy(right.eval(env));
+    }
+    return env -> Interpreter.unaryGeneric(expr, right.eval(env));
+  }
+
+  @Override
+  public Eval visitVariableExpr(Expr.Variable expr){
+    int slot = expr.slot;
+    int depth = expr.depth;
+    Token name = expr.name;
+    if(depth == -1){
+      Environment.Global global = globals.table().global(name.lexeme);
+      return env -> globals.value(global, name);
+    }
+    if(depth == 0) return env -> env.getSlot(slot);
+    return env -> env.getAt(depth, slot);
+  }
+
+  @Override
+  public Eval visitLogicalExpr(Expr.Logical expr){
+    Eval left = compile(expr.left);
+    Eval right = compile(expr.right);
+    if(expr.operator.type == TokenType.OR){
+      return env -> {
+        Object value = left.eval(env);
+        return Interpreter.isTruthy(value) ? value : right.eval(env);
+      };
+    }
+    return env -> {
+      Object value = left.eval(env);
+      return Interpreter.isTruthy(value) ? right.eval(env) : value;
+    };
+  }
+
+  // FUNCTIONS
+
+  // a function body compiled once, shared by every closure made from it
+  private static class Function {
+    final int arity;
+    final int slots;
+    final Exec[] body;
+
+    Function(int arity, int slots, Exec[] body){
+      this.arity = arity;
+      this.slots = slots;
+      this.body = body;
+    }
+  }
+
+  private Function function(Expr.Function declaration){
+    return new Function(declaration.params.size(), declaration.slots, compile(declaration.body));
+  }
+
+  private class ClosureFunction implements LoxCallable {
+    private final String name;
+    private final Function function;
+    private final Environment closure;
+
+    ClosureFunction(String name, Function function, Environment closure){
+      this.name = name;
+      this.function = function;
+      this.closure = closure;
+    }
+
+    @Override
+    public int arity(){
+      return function.arity;
+    }
+
+    @Override
+    public int frameSize(){
+      return function.slots;
+    }
+
+    @Override
+    public Object call(Interpreter interpreter, List<Object> arguments){
+      Object[] frame = new Object[function.slots];
+      for(int i = 0; i < function.arity; i++){
+        frame[i] = arguments.get(i);
+      }
+      return call(interpreter, frame);
+    }
+
+    @Override
+    public Object call(Interpreter interpreter, Object[] arguments){
+      // the argument array is the frame
+      Environment environment = new Environment(closure, arguments, function.arity);
+      if(run(function.body, environment) == Completion.RETURN){
+        Object value = returnValue;
+        returnValue = null;
+        return value;
+      }
+      return null;
+    }
+
+    @Override
+    public String toString(){
+      if(name == null) return "<fn>";
+      return "<fn " + name + ">";
+    }
+  }
+}
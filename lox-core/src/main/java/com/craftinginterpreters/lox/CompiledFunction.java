@@ -0,0 +1,43 @@
+package com.craftinginterpreters.lox;
+
+/**
+ * Superclass of the hidden classes JvmCompiler generates for hot functions.
+ * The generated code only ever sees numbers and booleans and has no side
+ * effects, so on anything unexpected it throws Deopt and the call is simply
+ * run again by the Interpreter.
+ */
+abstract class CompiledFunction {
+  static final class Deopt extends RuntimeException {
+    private Deopt(){
+      // thrown on the fast path, no stack trace
+      super(null, null, false, false);
+    }
+  }
+
+  static final Deopt DEOPT = new Deopt();
+
+  // set right after the class is defined, see JvmCompiler.compile
+  LoxFunction function;
+  Environment globals;
+  // the global the function calls itself through
+  Environment.Global global;
+
+  // the arguments are already unboxed, one per parameter
+  abstract double invoke(double[] arguments);
+
+  // before a recursive call, the global must still be this function
+  final void guard(){
+    if(globals.read(global) != function) throw DEOPT;
+  }
+
+  static double divide(double left, double right){
+    // the Interpreter reports the error
+    if(right == 0) throw DEOPT;
+    return left / right;
+  }
+
+  // the end of the body was reached, the function returns nil
+  static void noReturn(){
+    throw DEOPT;
+  }
+}
@@ -0,0 +1,64 @@
+package com.craftinginterpreters.lox;
+
+import java.util.List;
+
+/**
+ * A script ready to run, see LoxEngine.compile. It is never changed by
+ * running it, so one CompiledScript can be executed by many threads at once,
+ * each in its own Context.
+ */
+public final class CompiledScript {
+  // what one execution did
+  public static final class Result {
+    private final Context context;
+    private final List<String> output;
+    private final RunTimeError error;
+
+    Result(Context context, List<String> output, RunTimeError error){
+      this.context = context;
+      this.output = output;
+      this.error = error;
+    }
+
+    public boolean succeeded(){
+      return error == null;
+    }
+
+    // the printed lines
+    public List<String> output(){
+      return output;
+    }
+
+    // null if the script went to the end
+    public String error(){
+      return error == null ? null : error.getMessage();
+    }
+
+    // line of the error, 0 without one
+    public int line(){
+      return error == null ? 0 : error.token.line;
+    }
+
+    // a global as the script left it, until the context runs again
+    public Object get(String name){
+      return context.get(name);
+    }
+  }
+
+  private final LoxRuntime.Script script;
+  private final Natives natives;
+
+  CompiledScript(LoxRuntime.Script script, Natives natives){
+    this.script = script;
+    this.natives = natives;
+  }
+
+  public Result execute(Context context){
+    return context.execute(script, natives);
+  }
+
+  // in a fresh context without inputs
+  public Result execute(){
+    return execute(new Context());
+  }
+}
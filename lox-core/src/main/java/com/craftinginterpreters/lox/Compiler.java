@@ -0,0 +1,508 @@
+package com.craftinginterpreters.lox;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Compiles resolved statements into a Chunk for the VM.
+ * Locals live on the VM stack, a function's in the slots after its frame
+ * base in declaration order, so the compiler tracks them itself like the
+ * VM will see them. A function reaches the locals of the ones around it
+ * through upvalues, only those locals are ever moved off the stack.
+ */
+public class Compiler implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
+  private static class Local {
+    final String name;
+    final int depth;
+    // an inner function uses it, leaving its scope closes the upvalue
+    boolean captured = false;
+
+    Local(String name, int depth){
+      this.name = name;
+      this.depth = depth;
+    }
+  }
+
+  private static class Loop {
+    // the locals of the body, break has to pop them
+    final int scopeDepth;
+    final List<Integer> breaks = new ArrayList<>();
+
+    Loop(int scopeDepth){
+      this.scopeDepth = scopeDepth;
+    }
+  }
+
+  // the function being compiled, the script is the outermost one
+  private static class FunctionState {
+    final FunctionState enclosing;
+    final Chunk chunk = new Chunk();
+    final List<Local> locals = new ArrayList<>();
+    // per upvalue: a local of the enclosing function, or one of its upvalues
+    final List<Boolean> upvalueLocal = new ArrayList<>();
+    final List<Integer> upvalueIndex = new ArrayList<>();
+    final List<Loop> loops = new ArrayList<>();
+    // 0 means we are at the top level, everything declared there is global
+    int scopeDepth;
+
+    FunctionState(FunctionState enclosing, int scopeDepth){
+      this.enclosing = enclosing;
+      this.scopeDepth = scopeDepth;
+    }
+  }
+
+  // the indexes the global instructions carry
+  private final Environment.Globals globals;
+  private FunctionState current;
+  private Chunk chunk;
+  private int line = 1;
+
+  // with indexes of its own, the VM lays its globals out by them
+  Compiler(){
+    this(new Environment.Globals());
+  }
+
+  // with the indexes of a VM that runs chunk after chunk
+  Compiler(Environment.Globals globals){
+    this.globals = globals;
+  }
+
+  Chunk compile(List<Stmt> statements){
+    current = new FunctionState(null, 0);
+    chunk = current.chunk;
+    chunk.globals = globals;
+    for(Stmt stmt : statements){
+      compile(stmt);
+    }
+    emit(OpCode.NIL);
+    emit(OpCode.RETURN);
+    return chunk;
+  }
+
+  private void compile(Stmt stmt){
+    stmt.accept(this);
+  }
+
+  private void compile(Expr expr){
+    expr.accept(this);
+  }
+
+  private Chunk.Function function(String name, Expr.Function function){
+    // the parameters are the first locals, the call leaves the arguments there
+    current = new FunctionState(current, 1);
+    chunk = current.chunk;
+    for(Token param : function.params){
+      current.locals.add(new Local(param.lexeme, 1));
+    }
+    for(Stmt stmt : function.body){
+      compile(stmt);
+    }
+    emit(OpCode.NIL);
+    emit(OpCode.RETURN);
+
+    FunctionState compiled = current;
+    current = compiled.enclosing;
+    chunk = current.chunk;
+    int[] upvalueIndex = new int[compiled.upvalueIndex.size()];
+    boolean[] upvalueLocal = new boolean[upvalueIndex.length];
+    for(int i = 0; i < upvalueIndex.length; i++){
+      upvalueIndex[i] = compiled.upvalueIndex.get(i);
+      upvalueLocal[i] = compiled.upvalueLocal.get(i);
+    }
+    return new Chunk.Function(name, function.params.size(), compiled.chunk, upvalueLocal, upvalueIndex);
+  }
+
+  // the value is on top of the stack
+  private void define(Token name){
+    if(current.scopeDepth == 0){
+      emitShort(OpCode.DEFINE_GLOBAL, makeConstant(globals.global(name.lexeme)));
+    } else {
+      // it already is in its slot
+      declareLocal(name);
+    }
+  }
+
+  private void declareLocal(Token name){
+    if(current.locals.size() == 0xffff){
+      Lox.error(line, "Too many local variables in function.");
+    }
+    current.locals.add(new Local(name.lexeme, current.scopeDepth));
+  }
+
+  private void beginScope(){
+    current.scopeDepth++;
+  }
+
+  private void endScope(){
+    current.scopeDepth--;
+    List<Local> locals = current.locals;
+    while(!locals.isEmpty() && locals.get(locals.size() - 1).depth > current.scopeDepth){
+      emitPop(locals.remove(locals.size() - 1));
+    }
+  }
+
+  private void emitPop(Local local){
+    // a captured local moves into its upvalue before its slot is reused
+    emit(local.captured ? OpCode.CLOSE_UPVALUE : OpCode.POP);
+  }
+
+  private static int resolveLocal(FunctionState state, String name){
+    for(int i = state.locals.size() - 1; i >= 0; i--){
+      if(state.locals.get(i).name.equals(name)) return i;
+    }
+    return -1;
+  }
+
+  private static int resolveUpvalue(FunctionState state, String name){
+    if(state.enclosing == null) return -1;
+    int local = resolveLocal(state.enclosing, name);
+    if(local != -1){
+      state.enclosing.locals.get(local).captured = true;
+      return addUpvalue(state, true, local);
+    }
+    int upvalue = resolveUpvalue(state.enclosing, name);
+    if(upvalue != -1) return addUpvalue(state, false, upvalue);
+    return -1;
+  }
+
+  private static int addUpvalue(FunctionState state, boolean local, int index){
+    for(int i = 0; i < state.upvalueIndex.size(); i++){
+      if(state.upvalueIndex.get(i) == index && state.upvalueLocal.get(i) == local) return i;
+    }
+    state.upvalueLocal.add(local);
+    state.upvalueIndex.add(index);
+    return state.upvalueIndex.size() - 1;
+  }
+
+  // the Resolver says whether it is global, the slot is ours
+  private void emitVariable(Token name, int depth, byte getOrSetLocal, byte upvalueOp, byte globalOp){
+    if(depth != -1){
+      int slot = resolveLocal(current, name.lexeme);
+      if(slot != -1){
+        emitShort(getOrSetLocal, slot);
+        return;
+      }
+      int upvalue = resolveUpvalue(current, name.lexeme);
+      if(upvalue != -1){
+        emitShort(upvalueOp, upvalue);
+        return;
+      }
+    }
+    emitShort(globalOp, makeConstant(globals.global(name.lexeme)));
+  }
+
+  // EMITTING
+
+  private void emit(byte b){
+    chunk.write(b, line);
+  }
+
+  private void emitShort(byte op, int operand){
+    emit(op);
+    emitShort(operand);
+  }
+
+  private void emitShort(int operand){
+    emit((byte)((operand >> 8) & 0xff));
+    emit((byte)(operand & 0xff));
+  }
+
+  private int makeConstant(Object value){
+    int index = chunk.addConstant(value);
+    if(index > 0xffff){
+      Lox.error(line, "Too many constants in one chunk.");
+    }
+    return index;
+  }
+
+  private int emitJump(byte op){
+    emit(op);
+    emitShort(0xffff);
+    return chunk.count - 2;
+  }
+
+  private void patchJump(int offset){
+    // -2 for the operand of the jump itself
+    int jump = chunk.count - offset - 2;
+    if(jump > 0xffff){
+      Lox.error(line, "Too much code to jump over.");
+    }
+    chunk.code[offset] = (byte)((jump >> 8) & 0xff);
+    chunk.code[offset + 1] = (byte)(jump & 0xff);
+  }
+
+  private void emitLoop(int loopStart){
+    emit(OpCode.LOOP);
+    int offset = chunk.count - loopStart + 2;
+    if(offset > 0xffff){
+      Lox.error(line, "Loop body too large.");
+    }
+    emitShort(offset);
+  }
+
+  // STATEMENTS
+
+  @Override
+  public Void visitBlockStmt(Stmt.Block stmt){
+    beginScope();
+    for(Stmt statement : stmt.statements){
+      compile(statement);
+    }
+    endScope();
+    return null;
+  }
+
+  @Override
+  public Void visitClassStmt(Stmt.Class stmt){
+    line = stmt.name.line;
+    // a local class is in its slot before the methods that may use it
+    if(current.scopeDepth > 0) declareLocal(stmt.name);
+    for(Stmt.Function method : stmt.methods){
+      emitShort(OpCode.CLOSURE, makeConstant(function(method.name.lexeme, method.function)));
+    }
+    line = stmt.name.line;
+    // the declaration gives the methods and the root shape
+    emitShort(OpCode.CLASS, makeConstant(stmt));
+    if(current.scopeDepth == 0) define(stmt.name);
+    return null;
+  }
+
+  @Override
+  public Void visitBreakStmt(Stmt.Break stmt){
+    // the loops of the enclosing function are out of reach
+    if(current.loops.isEmpty()){
+      Lox.error(line, "Can't use 'break' outside of a loop.");
+      return null;
+    }
+    Loop loop = current.loops.get(current.loops.size() - 1);
+    // pop the locals of the body, they stay declared for the code after the break
+    List<Local> locals = current.locals;
+    for(int i = locals.size() - 1; i >= 0 && locals.get(i).depth > loop.scopeDepth; i--){
+      emitPop(locals.get(i));
+    }
+    loop.breaks.add(emitJump(OpCode.JUMP));
+    return null;
+  }
+
+  @Override
+  public Void visitExpressionStmt(Stmt.Expression stmt){
+    compile(stmt.expression);
+    emit(OpCode.POP);
+    return null;
+  }
+
+  @Override
+  public Void visitFunctionStmt(Stmt.Function stmt){
+    line = stmt.name.line;
+    // a local function can call itself, its slot is known before the body
+    if(current.scopeDepth > 0) declareLocal(stmt.name);
+    emitShort(OpCode.CLOSURE, makeConstant(function(stmt.name.lexeme, stmt.function)));
+    line = stmt.name.line;
+    if(current.scopeDepth == 0) define(stmt.name);
+    return null;
+  }
+
+  @Override
+  public Void visitIfStmt(Stmt.If stmt){
+    compile(stmt.condition);
+    int thenJump = emitJump(OpCode.JUMP_IF_FALSE);
+    emit(OpCode.POP);
+    compile(stmt.thenBranch);
+    int elseJump = emitJump(OpCode.JUMP);
+    patchJump(thenJump);
+    emit(OpCode.POP);
+    if(stmt.elseBranch != null){
+      compile(stmt.elseBranch);
+    }
+    patchJump(elseJump);
+    return null;
+  }
+
+  @Override
+  public Void visitPrintStmt(Stmt.Print stmt){
+    compile(stmt.expression);
+    emit(OpCode.PRINT);
+    return null;
+  }
+
+  @Override
+  public Void visitReturnStmt(Stmt.Return stmt){
+    line = stmt.keyword.line;
+    if(stmt.value != null){
+      compile(stmt.value);
+    } else {
+      emit(OpCode.NIL);
+    }
+    emit(OpCode.RETURN);
+    return null;
+  }
+
+  @Override
+  public Void visitVarStmt(Stmt.Var stmt){
+    line = stmt.name.line;
+    if(stmt.initializer != null){
+      compile(stmt.initializer);
+    } else {
+      emit(OpCode.NIL);
+    }
+    define(stmt.name);
+    return null;
+  }
+
+  @Override
+  public Void visitWhileStmt(Stmt.While stmt){
+    int loopStart = chunk.count;
+    // no condition once the Optimizer saw a literal true, only break leaves
+    int exitJump = -1;
+    if(stmt.condition != null){
+      compile(stmt.condition);
+      exitJump = emitJump(OpCode.JUMP_IF_FALSE);
+      emit(OpCode.POP);
+    }
+
+    Loop loop = new Loop(current.scopeDepth);
+    current.loops.add(loop);
+    compile(stmt.body);
+    current.loops.remove(current.loops.size() - 1);
+
+    emitLoop(loopStart);
+    if(exitJump != -1){
+      patchJump(exitJump);
+      emit(OpCode.POP);
+    }
+    // the condition is already popped when we break out of the body
+    for(int offset : loop.breaks){
+      patchJump(offset);
+    }
+    return null;
+  }
+
+  // EXPRESSIONS
+
+  @Override
+  public Void visitAssignExpr(Expr.Assign expr){
+    compile(expr.value);
+    line = expr.name.line;
+    emitVariable(expr.name, expr.depth, OpCode.SET_LOCAL, OpCode.SET_UPVALUE, OpCode.SET_GLOBAL);
+    return null;
+  }
+
+  @Override
+  public Void visitBinaryExpr(Expr.Binary expr){
+    compile(expr.left);
+    compile(expr.right);
+    line = expr.operator.line;
+    switch(expr.operator.type){
+      case MINUS: emit(OpCode.SUBTRACT); break;
+      case SLASH: emit(OpCode.DIVIDE); break;
+      case STAR: emit(OpCode.MULTIPLY); break;
+      case PLUS: emit(OpCode.ADD); break;
+      case GREATER: emit(OpCode.GREATER); break;
+      case LESS: emit(OpCode.LESS); break;
+      case GREATER_EQUAL: emit(OpCode.GREATER_EQUAL); break;
+      case LESS_EQUAL: emit(OpCode.LESS_EQUAL); break;
+      case BANG_EQUAL: emit(OpCode.NOT_EQUAL); break;
+      case EQUAL_EQUAL: emit(OpCode.EQUAL); break;
+      default:
+        break;
+    }
+    return null;
+  }
+
+  @Override
+  public Void visitFunctionExpr(Expr.Function expr){
+    emitShort(OpCode.CLOSURE, makeConstant(function(null, expr)));
+    return null;
+  }
+
+  @Override
+  public Void visitCallExpr(Expr.Call expr){
+    compile(expr.callee);
+    for(Expr argument : expr.arguments){
+      compile(argument);
+    }
+    line = expr.paren.line;
+    emit(OpCode.CALL);
+    emit((byte)expr.arguments.size());
+    return null;
+  }
+
+  @Override
+  public Void visitGetExpr(Expr.Get expr){
+    compile(expr.object);
+    line = expr.name.line;
+    // the node carries the name and the inline cache of this site
+    emitShort(OpCode.GET_PROPERTY, makeConstant(expr));
+    return null;
+  }
+
+  @Override
+  public Void visitSetExpr(Expr.Set expr){
+    compile(expr.object);
+    compile(expr.value);
+    line = expr.name.line;
+    emitShort(OpCode.SET_PROPERTY, makeConstant(expr));
+    return null;
+  }
+
+  @Override
+  public Void visitGroupingExpr(Expr.Grouping expr){
+    compile(expr.expression);
+    return null;
+  }
+
+  @Override
+  public Void visitLiteralExpr(Expr.Literal expr){
+    if(expr.value == null){
+      emit(OpCode.NIL);
+    } else if(expr.value.equals(true)){
+      emit(OpCode.TRUE);
+    } else if(expr.value.equals(false)){
+      emit(OpCode.FALSE);
+    } else {
+      emitShort(OpCode.CONSTANT, makeConstant(expr.value));
+    }
+    return null;
+  }
+
+  @Override
+  public Void visitUnaryExpr(Expr.Unary expr){
+    compile(expr.right);
+    line = expr.operator.line;
+    switch(expr.operator.type){
+      case MINUS: emit(OpCode.NEGATE); break;
+      case BANG: emit(OpCode.NOT); break;
+      default:
+        break;
+    }
+    return null;
+  }
+
+  @Override
+  public Void visitVariableExpr(Expr.Variable expr){
+    line = expr.name.line;
+    emitVariable(expr.name, expr.depth, OpCode.GET_LOCAL, OpCode.GET_UPVALUE, OpCode.GET_GLOBAL);
+    return null;
+  }
+
+  @Override
+  public Void visitLogicalExpr(Expr.Logical expr){
+    compile(expr.left);
+    line = expr.operator.line;
+    if(expr.operator.type == TokenType.OR){
+      // if left is truthy we keep it and skip the right side
+      int elseJump = emitJump(OpCode.JUMP_IF_FALSE);
+      int endJump = emitJump(OpCode.JUMP);
+      patchJump(elseJump);
+      emit(OpCode.POP);
+      compile(expr.right);
+      patchJump(endJump);
+    } else {
+      int endJump = emitJump(OpCode.JUMP_IF_FALSE);
+      emit(OpCode.POP);
+      compile(expr.right);
+      patchJump(endJump);
+    }
+    return null;
+  }
+}
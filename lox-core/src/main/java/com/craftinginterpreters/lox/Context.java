@@ -0,0 +1,61 @@
+package com.craftinginterpreters.lox;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The globals a CompiledScript runs with, plus the inputs defined in them
+ * before each run.
+ *
+ * A Context can be kept and used for run after run: every execution starts
+ * from only the natives of the engine and the inputs, nothing the previous
+ * script defined is left. The globals table is cleared instead of thrown
+ * away. The caches on the script do not depend on the Context (global
+ * indexes belong to the script, shapes to the class declaration), so they
+ * stay warm from one run or Context to the next.
+ * A Context is used by one thread at a time.
+ */
+public final class Context {
+  private final List<String> printed = new ArrayList<>();
+  final LoxRuntime runtime = new LoxRuntime(printed::add);
+  private final Map<String, Object> inputs = new LinkedHashMap<>();
+
+  // numbers, strings, booleans and null, defined as a global on each run
+  public Context put(String name, Object value){
+    inputs.put(name, toLox(value));
+    return this;
+  }
+
+  public Context remove(String name){
+    inputs.remove(name);
+    return this;
+  }
+
+  CompiledScript.Result execute(LoxRuntime.Script script, Natives natives){
+    printed.clear();
+    runtime.reset(natives, script);
+    for(Map.Entry<String, Object> input : inputs.entrySet()){
+      runtime.define(input.getKey(), input.getValue());
+    }
+    runtime.run(script);
+    List<String> output = Collections.unmodifiableList(new ArrayList<>(printed));
+    return new CompiledScript.Result(this, output, runtime.lastError());
+  }
+
+  Object get(String name){
+    Object value = runtime.get(name);
+    // a rope does not leave the interpreter
+    if(value instanceof LoxString) return value.toString();
+    return value;
+  }
+
+  private static Object toLox(Object value){
+    if(value == null || value instanceof Boolean || value instanceof String) return value;
+    if(value instanceof Number) return ((Number)value).doubleValue();
+    if(value instanceof CharSequence) return value.toString();
+    throw new IllegalArgumentException("Not a Lox value: " + value.getClass().getName());
+  }
+}
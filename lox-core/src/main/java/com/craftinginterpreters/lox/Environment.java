@@ -0,0 +1,205 @@
+package com.craftinginterpreters.lox;
+
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class Environment {
+  private static final int DEFAULT_SLOTS = 8;
+  // a global slot nothing defined, or one undefined again by clear()
+  private static final Object UNDEFINED = new Object();
+
+  final Environment enclosing;
+  // globals are not resolved, their slots come from the indexes of the
+  // script being run, null for the other environments
+  private Globals table;
+  // locals live in a frame, the resolver gives each one its slot
+  private Object[] slots;
+  private int count = 0;
+
+  Environment(){
+    this.enclosing = null;
+    this.table = new Globals();
+    this.slots = new Object[DEFAULT_SLOTS];
+    Arrays.fill(slots, UNDEFINED);
+  }
+
+  Environment(Environment enclosing){
+    this(enclosing, DEFAULT_SLOTS);
+  }
+
+  Environment(Environment enclosing, int size){
+    this.enclosing = enclosing;
+    this.slots = new Object[size];
+  }
+
+  // a call frame, the arguments are already in the first slots
+  Environment(Environment enclosing, Object[] frame, int count){
+    this.enclosing = enclosing;
+    this.slots = frame;
+    this.count = count;
+  }
+
+  void define(String name, Object value){
+    if(table != null){
+      define(table.global(name), value);
+      return;
+    }
+    define(value);
+  }
+
+  // redefining a global keeps its slot
+  void define(Global global, Object value){
+    if(global.table != table) global = table.global(global.name);
+    if(global.index >= slots.length) grow(global.index);
+    slots[global.index] = value;
+  }
+
+  private void grow(int index){
+    int size = slots.length;
+    slots = Arrays.copyOf(slots, Math.max(index + 1, size * 2));
+    Arrays.fill(slots, size, slots.length, UNDEFINED);
+  }
+
+  void define(Object value){
+    // the slots are handed out in declaration order by the resolver
+    // so defining is just appending to the frame
+    if(count == slots.length){
+      slots = Arrays.copyOf(slots, Math.max(DEFAULT_SLOTS, count * 2));
+    }
+    slots[count++] = value;
+  }
+
+  Object get(Token name){
+    return value(table.global(name.lexeme), name);
+  }
+
+  // the index of a global name in one Globals, kept by the Variable or
+  // Assign that reads it
+  static final class Global {
+    final Globals table;
+    final String name;
+    final int index;
+
+    private Global(Globals table, String name, int index){
+      this.table = table;
+      this.name = name;
+      this.index = index;
+    }
+  }
+
+  // the indexes of the global names of one script, it goes away with it
+  // many threads running the script can add names at once
+  static final class Globals {
+    private final Map<String, Global> indexes = new ConcurrentHashMap<>();
+    private final AtomicInteger next = new AtomicInteger();
+
+    Global global(String name){
+      Global global = indexes.get(name);
+      if(global != null) return global;
+      return indexes.computeIfAbsent(name, key -> new Global(this, key, next.getAndIncrement()));
+    }
+
+    // null if no name got an index
+    Global find(String name){
+      return indexes.get(name);
+    }
+
+    int size(){
+      return next.get();
+    }
+  }
+
+  Globals table(){
+    return table;
+  }
+
+  // lays the globals out by the indexes of another script, a table
+  // running the same script as before is left alone
+  void use(Globals script){
+    if(script == table) return;
+    Object[] previous = slots;
+    slots = new Object[Math.max(DEFAULT_SLOTS, script.size())];
+    Arrays.fill(slots, UNDEFINED);
+    for(Global global : table.indexes.values()){
+      if(global.index >= previous.length || previous[global.index] == UNDEFINED) continue;
+      Global moved = script.global(global.name);
+      if(moved.index >= slots.length) grow(moved.index);
+      slots[moved.index] = previous[global.index];
+    }
+    table = script;
+  }
+
+  // the global, or UNDEFINED
+  // a site of another script, a function it defined, goes by the name
+  Object read(Global global){
+    if(global.table != table) global = table.global(global.name);
+    return global.index < slots.length ? slots[global.index] : UNDEFINED;
+  }
+
+  static boolean isUndefined(Object value){
+    return value == UNDEFINED;
+  }
+
+  Object value(Global global, Token name){
+    Object value = read(global);
+    if(value == UNDEFINED) throw undefined(name);
+    return value;
+  }
+
+  void assign(Global global, Token name, Object value){
+    if(global.table != table) global = table.global(global.name);
+    if(read(global) == UNDEFINED) throw undefined(name);
+    slots[global.index] = value;
+  }
+
+  private static RunTimeError undefined(Token name){
+    return new RunTimeError(name, "Undefined variable '" + name.lexeme + "'.");
+  }
+
+  // undefines every global, for a table used again
+  void clear(){
+    Arrays.fill(slots, UNDEFINED);
+  }
+
+  // null if it is not defined
+  Object lookup(String name){
+    Global global = table.find(name);
+    if(global == null) return null;
+    Object value = read(global);
+    return value == UNDEFINED ? null : value;
+  }
+
+  // a local of this frame, no walk up
+  Object getSlot(int slot){
+    return slots[slot];
+  }
+
+  void setSlot(int slot, Object value){
+    slots[slot] = value;
+  }
+
+  Object getAt(int distance, int slot){
+    return ancestor(distance).slots[slot];
+  }
+
+  void assignAt(int distance, int slot, Object value){
+    ancestor(distance).slots[slot] = value;
+  }
+
+  Environment ancestor(int distance){
+    Environment environment = this;
+    for(int i = 0; i < distance; i++){
+      // il remonte a un ancien scope
+      environment = environment.enclosing;
+    }
+
+    return environment;
+  }
+
+  void assign(Token name, Object value){
+    assign(table.global(name.lexeme), name, value);
+  }
+}
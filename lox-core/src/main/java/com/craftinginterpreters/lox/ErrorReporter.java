@@ -0,0 +1,33 @@
+package com.craftinginterpreters.lox;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// the errors of one LoxRuntime, collected instead of printed
+// the command line keeps the static flags of Lox
+class ErrorReporter {
+  boolean hadError = false;
+  boolean hadRunTimeError = false;
+  final List<String> messages = new ArrayList<>();
+  // the one that stopped the last run
+  RunTimeError lastRuntimeError = null;
+
+  // before each run, a runtime used again keeps only the errors of its last run
+  void clear(){
+    hadError = false;
+    hadRunTimeError = false;
+    messages.clear();
+    lastRuntimeError = null;
+  }
+
+  void report(int line, String where, String message){
+    messages.add("[line " + line + "] Error " + where + " : " + message);
+    hadError = true;
+  }
+
+  void runtimeError(RunTimeError error){
+    messages.add(error.getMessage() + "\n[line " + error.token.line + "]");
+    lastRuntimeError = error;
+    hadRunTimeError = true;
+  }
+}
@@ -29,6 +29,9 @@ abstract class Expr{
 
     final Token name;
     final Expr value;
+    int depth = -1;
+    int slot = 0;
+    Environment.Global global = null;
   }
 
   static class Binary extends Expr {
@@ -46,6 +49,7 @@ abstract class Expr{
     final Expr left;
     final Token operator;
     final Expr right;
+    Specialization specialization = Specialization.UNINITIALIZED;
   }
 
   static class Function extends Expr {
@@ -61,6 +65,7 @@ abstract class Expr{
 
     final List<Token> params;
     final List<Stmt> body;
+    int slots = 0;
   }
 
   static class Call extends Expr {
@@ -93,6 +98,7 @@ abstract class Expr{
 
     final Expr object;
     final Token name;
+    InlineCache cache = new InlineCache();
   }
 
   static class Set extends Expr {
@@ -110,6 +116,7 @@ abstract class Expr{
     final Expr object;
     final Token name;
     final Expr value;
+    InlineCache cache = new InlineCache();
   }
 
   static class Grouping extends Expr {
@@ -151,6 +158,7 @@ abstract class Expr{
 
     final Token operator;
     final Expr right;
+    Specialization specialization = Specialization.UNINITIALIZED;
   }
 
   static class Variable extends Expr {
@@ -164,6 +172,9 @@ abstract class Expr{
     }
 
     final Token name;
+    int depth = -1;
+    int slot = 0;
+    Environment.Global global = null;
   }
 
   static class Logical extends Expr {
@@ -184,5 +195,7 @@ abstract class Expr{
   }
 
 
+  boolean numeric = false;
+
   abstract <R> R accept(Visitor<R> visitor);
 }
@@ -0,0 +1,95 @@
+package com.craftinginterpreters.lox;
+
+import java.util.Arrays;
+
+/**
+ * Per-site cache for property access, keyed by the Shape of the instance.
+ * Holds up to MAX_ENTRIES shapes (polymorphic), after that the site is
+ * megamorphic and always takes the slow path.
+ *
+ * The tree, and so the cache, can be shared by scripts running on other
+ * threads (see LoxRuntime): entries are immutable and the array is replaced
+ * whole, a reader sees the old entries or the new ones, never half of one.
+ * An entry only holds shapes and indexes, which come from the declaration,
+ * never a class or a method of one runtime.
+ */
+final class InlineCache {
+  private static final int MAX_ENTRIES = 4;
+
+  private static final class Entry {
+    final Shape shape;
+    // field index, or -1 when the get hits a method
+    final int index;
+    // the method slot for a get, see LoxClass.methodSlot
+    final int method;
+    // the shape after adding the field, for a set
+    final Shape next;
+
+    Entry(Shape shape, int index, int method, Shape next){
+      this.shape = shape;
+      this.index = index;
+      this.method = method;
+      this.next = next;
+    }
+  }
+
+  private static final Entry[] EMPTY = new Entry[0];
+
+  private volatile Entry[] entries = EMPTY;
+
+  Object get(LoxInstance instance, Token name){
+    Shape shape = instance.shape;
+    for(Entry entry : entries){
+      if(entry.shape == shape){
+        return entry.index >= 0 ? instance.fields[entry.index] : instance.klass.method(entry.method);
+      }
+    }
+
+    int index = shape.indexOf(name.lexeme);
+    if(index >= 0){
+      add(shape, index, -1, null);
+      return instance.fields[index];
+    }
+
+    int method = instance.klass.methodSlot(name.lexeme);
+    if(method < 0){
+      throw new RunTimeError(name, "Undefined property '" + name.lexeme + "'.");
+    }
+    add(shape, -1, method, null);
+    return instance.klass.method(method);
+  }
+
+  void set(LoxInstance instance, Token name, Object value){
+    Shape shape = instance.shape;
+    for(Entry entry : entries){
+      if(entry.shape == shape){
+        if(entry.next == null){
+          instance.fields[entry.index] = value;
+        } else {
+          instance.addField(entry.next, entry.index, value);
+        }
+        return;
+      }
+    }
+
+    int index = shape.indexOf(name.lexeme);
+    if(index >= 0){
+      add(shape, index, -1, null);
+      instance.fields[index] = value;
+      return;
+    }
+
+    Shape next = shape.withField(name.lexeme);
+    add(shape, shape.size, -1, next);
+    instance.addField(next, shape.size, value);
+  }
+
+  private void add(Shape shape, int index, int method, Shape next){
+    Entry[] current = entries;
+    if(current.length == MAX_ENTRIES) return;
+    Entry[] grown = Arrays.copyOf(current, current.length + 1);
+    grown[current.length] = new Entry(shape, index, method, next);
+    // two threads adding at once may lose an entry, it is found again next time
+    entries = grown;
+  }
+}
@@ -0,0 +1,632 @@
+package com.craftinginterpreters.lox;
+
+import java.util.List;
+
+// import com.craftinginterpreters.lox.Expr.Call;
+// import com.craftinginterpreters.lox.Stmt.Break;
+
+import java.util.Arrays;
+public class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Interpreter.Completion> {
+  // how a statement finished, return and break travel up as a status
+  // instead of an exception, the value of a return waits in returnValue
+  enum Completion {
+    NORMAL,
+    BREAK,
+    RETURN
+  }
+
+  // loop counters and small integers are boxed once, not on every operation
+  private static final int SMALL_NUMBER_LOW = -128;
+  private static final int SMALL_NUMBER_HIGH = 1024;
+  private static final Double[] SMALL_NUMBERS = new Double[SMALL_NUMBER_HIGH - SMALL_NUMBER_LOW + 1];
+
+  static {
+    for(int i = 0; i < SMALL_NUMBERS.length; i++){
+      SMALL_NUMBERS[i] = (double)(i + SMALL_NUMBER_LOW);
+    }
+  }
+
+  Interpreter(){
+    defineNatives(globals);
+  }
+
+  // shared with the VM so both backends start with the same globals
+  static void defineNatives(Environment globals){
+    Natives.STANDARD.install(globals);
+  }
+
+  final Environment globals = new Environment();
+  private Environment environment = globals;
+  private Object returnValue = null;
+  private OutputSink out = OutputSink.stdout();
+
+  void setOutput(OutputSink out){
+    this.out = out;
+  }
+
+  void interpreter(List<Stmt> statements){
+    try {
+      for (Stmt statement : statements) {
+        execute(statement);
+      }
+    } catch (RunTimeError error) {
+      // blocks don't restore on the way out, start over from the top
+      environment = globals;
+      Lox.runtimeError(error);
+    }
+  }
+
+  private Completion execute(Stmt stmt){
+    return stmt.accept(this);
+  }
+
+  Object takeReturnValue(){
+    Object value = returnValue;
+    returnValue = null;
+    return value;
+  }
+
+  static String stringify(Object object){
+    if(object == null) return "nil";
+
+    if(object instanceof Double){
+      String text = object.toString();
+      if(text.endsWith(".0")){
+        text = text.substring(0, text.length() - 2);
+      }
+      return text;
+    }
+
+    return object.toString();
+  }
+
+  Object evaluate(Expr expr){
+    return expr.accept(this);
+  }
+
+  @Override
+  public Completion visitVarStmt(Stmt.Var stmt){
+    Object value = null;
+    if(stmt.initializer != null){
+      value = evaluate(stmt.initializer);
+    }
+    environment.define(stmt.name.lexeme, value);
+    return Completion.NORMAL;
+  }
+
+  @Override
+  public Completion visitExpressionStmt(Stmt.Expression stmt){
+    evaluate(stmt.expression);
+    return Completion.NORMAL;
+  }
+
+  // stock it in the environment
+  // this is not executing but storing
+  @Override
+  public Completion visitFunctionStmt(Stmt.Function stmt){
+    // current environment
+    // even inside recursive
+    // it is a function and inside there is another function, it will pass the block environment
+    LoxFunction function = new LoxFunction(stmt.name.lexeme,stmt.function, environment);
+    environment.define(stmt.name.lexeme, function);
+
+    return Completion.NORMAL;
+  }
+
+  @Override
+  public Completion visitPrintStmt(Stmt.Print stmt){
+    Object value = evaluate(stmt.expression);
+    out.println(stringify(value));
+    return Completion.NORMAL;
+  }
+
+
+  @Override
+  public Completion visitBlockStmt(Stmt.Block stmt){
+    return executeBlock(stmt.statements, new Environment(environment));
+  }
+
+  @Override
+  public Completion visitClassStmt(Stmt.Class stmt){
+    /*
+     * the methods close over the current environment
+     * so the class is still visible inside its own methods
+     * even if we define it after building them
+     */
+    LoxCallable[] methods = new LoxCallable[stmt.methods.size()];
+    for (int i = 0; i < methods.length; i++) {
+      Stmt.Function method = stmt.methods.get(i);
+      methods[i] = new LoxFunction(method.name.lexeme, method.function, environment);
+    }
+    
+    LoxClass klass = new LoxClass(stmt, methods);
+    environment.define(stmt.name.lexeme, klass);
+
+    return Completion.NORMAL;
+  }
+  @Override
+  public Completion visitIfStmt(Stmt.If stmt){
+    // 1 -> evaluate the condition expression;
+    if(isTruthy(evaluate(stmt.condition))){
+      return execute(stmt.thenBranch);
+    }else if(stmt.elseBranch != null){
+      return execute(stmt.elseBranch);
+    }
+    return Completion.NORMAL;
+  }
+
+  @Override
+  public Completion visitWhileStmt(Stmt.While stmt){
+    // no condition once the Optimizer saw a literal true
+    while(stmt.condition == null || isTruthy(evaluate(stmt.condition))){
+      Completion completion = execute(stmt.body);
+      if(completion == Completion.BREAK) break;
+      // a return goes on up to the function
+      if(completion == Completion.RETURN) return completion;
+    }
+    return Completion.NORMAL;
+  }
+
+  @Override
+  public Completion visitBreakStmt(Stmt.Break stmt) {
+    return Completion.BREAK;
+  }
+
+  @Override
+  public Object visitVariableExpr(Expr.Variable expr){
+    // avant: return environment.get(expr.name);
+    return lookupVariable(expr);
+  }
+
+  private Object lookupVariable(Expr.Variable expr){
+    // the resolver wrote where the local lives on the node
+    // if it is not local (depth -1) it is global
+    if(expr.depth != -1){
+      return environment.getAt(expr.depth, expr.slot);
+    }else{
+      // the index in the script's table is looked up once per site, not
+      // hashed on every read
+      Environment.Global global = expr.global;
+      if(global == null) expr.global = global = globals.table().global(expr.name.lexeme);
+      return globals.value(global, expr.name);
+    }
+  }
+
+  @Override
+  public Object visitLiteralExpr(Expr.Literal expr){
+    return expr.value;
+  }
+
+  @Override
+  public Object visitGroupingExpr(Expr.Grouping expr){
+    return evaluate(expr.expression);
+  }
+
+  @Override
+  public Object visitUnaryExpr(Expr.Unary expr){
+    // minus is always numeric, it never boxes its operand
+    if(expr.numeric) return box(evaluateNumber(expr));
+
+    Object right = evaluate(expr.right);
+    switch(expr.specialization){
+      case BOOLEAN:
+        if(right instanceof Boolean) return !(boolean)right;
+        break;
+      case GENERIC:
+        return unaryGeneric(expr, right);
+      default:
+        break;
+    }
+
+    // first run or the type changed, rewrite the node
+    if(expr.specialization == Specialization.UNINITIALIZED){
+      if(expr.operator.type == TokenType.BANG && right instanceof Boolean){
+        expr.specialization = Specialization.BOOLEAN;
+      } else {
+        expr.specialization = Specialization.GENERIC;
+      }
+    } else {
+      expr.specialization = Specialization.GENERIC;
+    }
+    return unaryGeneric(expr, right);
+  }
+
+  static Object unaryGeneric(Expr.Unary expr, Object right){
+    switch(expr.operator.type){
+      case MINUS:
+      checkNumberOperand(expr.operator, right);
+        return -(double)right;
+      case BANG:
+        return !isTruthy(right);
+      default:
+        break;
+    }
+    // nreachable
+    return null;
+  }
+
+  @Override
+  public Object visitBinaryExpr(Expr.Binary expr){
+    if(expr.numeric) return box(evaluateNumber(expr));
+    if(expr.left.numeric && expr.right.numeric){
+      // comparing two numeric subtrees, the operands are never boxed
+      return binaryNumber(expr, evaluateNumber(expr.left), evaluateNumber(expr.right));
+    }
+
+    Object left = evaluate(expr.left);
+    Object right = evaluate(expr.right);
+    switch(expr.specialization){
+      case NUMBER:
+        if(left instanceof Double && right instanceof Double)
+          return binaryNumber(expr, (double)left, (double)right);
+        break;
+      case STRING:
+        if(LoxString.isString(left) && LoxString.isString(right))
+          return binaryString(expr, left, right);
+        break;
+      case GENERIC:
+        return binaryGeneric(expr, left, right);
+      default:
+        break;
+    }
+
+    // first run or the type changed, rewrite the node
+    if(expr.specialization == Specialization.UNINITIALIZED){
+      if(left instanceof Double && right instanceof Double){
+        expr.specialization = Specialization.NUMBER;
+      } else if(LoxString.isString(left) && LoxString.isString(right) && isStringOperator(expr.operator.type)){
+        expr.specialization = Specialization.STRING;
+      } else {
+        expr.specialization = Specialization.GENERIC;
+      }
+    } else {
+      expr.specialization = Specialization.GENERIC;
+    }
+    return binaryGeneric(expr, left, right);
+  }
+
+  private static boolean isStringOperator(TokenType type){
+    return type == TokenType.PLUS || type == TokenType.EQUAL_EQUAL || type == TokenType.BANG_EQUAL;
+  }
+
+  // only for expressions the resolver marked numeric
+  // the intermediate results stay unboxed doubles
+  private double evaluateNumber(Expr expr){
+    if(expr instanceof Expr.Literal){
+      return (double)((Expr.Literal)expr).value;
+    }
+    if(expr instanceof Expr.Grouping){
+      return evaluateNumber(((Expr.Grouping)expr).expression);
+    }
+    if(expr instanceof Expr.Unary){
+      Expr.Unary unary = (Expr.Unary)expr;
+      if(unary.right.numeric) return -evaluateNumber(unary.right);
+      Object right = evaluate(unary.right);
+      checkNumberOperand(unary.operator, right);
+      return -(double)right;
+    }
+
+    Expr.Binary binary = (Expr.Binary)expr;
+    // both sides are evaluated before checking, like binaryGeneric
+    double left = 0;
+    double right = 0;
+    Object leftValue = null;
+    Object rightValue = null;
+    if(binary.left.numeric) left = evaluateNumber(binary.left);
+    else leftValue = evaluate(binary.left);
+    if(binary.right.numeric) right = evaluateNumber(binary.right);
+    else rightValue = evaluate(binary.right);
+
+    if(!binary.left.numeric){
+      if(!(leftValue instanceof Double)) throw new RunTimeError(binary.operator, "Operand must be numbers");
+      left = (double)leftValue;
+    }
+    if(!binary.right.numeric){
+      if(!(rightValue instanceof Double)) throw new RunTimeError(binary.operator, "Operand must be numbers");
+      right = (double)rightValue;
+    }
+
+    switch(binary.operator.type){
+      case MINUS: return left - right;
+      case SLASH:
+      checkZeroDivision(binary.operator, right);
+        return left / right;
+      case STAR: return left * right;
+      case PLUS: return left + right;
+      default:
+      break;
+    }
+    /// un reachable
+    return 0;
+  }
+
+  static Double box(double value){
+    int i = (int)value;
+    // -0.0 is not cached, Double.equals tells it apart from 0.0
+    if(i == value && i >= SMALL_NUMBER_LOW && i <= SMALL_NUMBER_HIGH
+        && (i != 0 || Double.doubleToRawLongBits(value) == 0L)){
+      return SMALL_NUMBERS[i - SMALL_NUMBER_LOW];
+    }
+    return value;
+  }
+
+  // both operands are known to be numbers, no more type checks
+  private Object binaryNumber(Expr.Binary expr, double left, double right){
+    switch (expr.operator.type){
+      case MINUS: return box(left - right);
+      case SLASH:
+      checkZeroDivision(expr.operator, right);
+        return box(left / right);
+      case STAR: return box(left * right);
+      case PLUS: return box(left + right);
+      case GREATER: return left > right;
+      case LESS: return left < right;
+      case GREATER_EQUAL: return left >= right;
+      case LESS_EQUAL: return left <= right;
+      // same as Double.equals, like isEqual
+      case BANG_EQUAL: return Double.compare(left, right) != 0;
+      case EQUAL_EQUAL: return Double.compare(left, right) == 0;
+      default:
+      break;
+    }
+    /// un reachable
+    return null;
+  }
+
+  // String or LoxString on both sides
+  private Object binaryString(Expr.Binary expr, Object left, Object right){
+    switch (expr.operator.type){
+      case PLUS: return LoxString.concat(left, right);
+      case BANG_EQUAL: return !isEqual(left, right);
+      case EQUAL_EQUAL: return isEqual(left, right);
+      default:
+      break;
+    }
+    /// un reachable
+    return null;
+  }
+
+  // also the slow path of the closure backend
+  static Object binaryGeneric(Expr.Binary expr, Object left, Object right){
+    switch (expr.operator.type){
+      case MINUS:
+      checkNumberOperand(expr.operator, left, right);
+        return (double)left - (double)right;
+      case SLASH:
+      checkNumberOperand(expr.operator, left, right);
+      checkZeroDivision(expr.operator, (double)right);
+        return (double)left / (double)right;
+      case STAR:
+      checkNumberOperand(expr.operator, left, right);
+        return (double)left * (double)right;
+      case PLUS:
+        if(left instanceof Double && right instanceof Double){
+          return (double)left + (double)right;
+        } 
+        // a long result is a LoxString, see concat
+        if(LoxString.isString(left) && LoxString.isString(right))
+          return LoxString.concat(left, right);
+
+        if(LoxString.isString(left) && right instanceof Double)
+          return LoxString.concat(left, doubleToStr((double)right));
+        if(left instanceof Double && LoxString.isString(right))
+          return LoxString.concat(doubleToStr((double)left), right);
+
+        throw new RunTimeError(expr.operator, "Operand must be two numbers or two strings");
+      case GREATER:
+      checkNumberOperand(expr.operator, left, right);
+        return (double)left > (double)right;
+      case LESS:
+      checkNumberOperand(expr.operator, left, right);
+        return (double)left < (double)right;
+      case GREATER_EQUAL:
+      checkNumberOperand(expr.operator, left, right);
+        return (double)left >= (double)right;
+      case LESS_EQUAL:
+      checkNumberOperand(expr.operator, left, right);
+        return (double)left <= (double)right;
+      case BANG_EQUAL: return !isEqual(left, right);
+      case EQUAL_EQUAL: return isEqual(left, right);
+
+      default:
+      break;
+    }
+
+    /// un reachable
+    return null;
+  }
+
+  @Override 
+  public Object visitFunctionExpr(Expr.Function expr){
+    return new LoxFunction(null, expr, environment);
+  }
+  @Override
+  public Object visitLogicalExpr(Expr.Logical expr){
+    Object left = evaluate(expr.left);
+    if(expr.operator.type == TokenType.OR ){
+      if(isTruthy(left)) return left;
+    }else {
+      //! AND
+      // when isTruthy(left) is false the ! operator turns it in true, 
+      // so if it is false it will send the left which is false
+      // ekse 
+      if(isTruthy(left) == false) return left;
+    }
+    return evaluate(expr.right);
+  }
+
+  //! Assignemnt not allowed to create variable
+  @Override
+  public Object visitAssignExpr(Expr.Assign expr){
+    Object value = evaluate(expr.value);
+
+    if(expr.depth != -1){
+      environment.assignAt(expr.depth, expr.slot, value);
+    } else {
+      Environment.Global global = expr.global;
+      if(global == null) expr.global = global = globals.table().global(expr.name.lexeme);
+      globals.assign(global, expr.name, value);
+    }
+    return value;
+  }
+
+  static boolean isTruthy(Object object){
+    if(object == null) return false;
+    if(object instanceof Boolean) return (boolean)object;
+    return true;
+  }
+
+  static boolean isEqual(Object a, Object b){
+    if(a == null && b == null) return true;
+    if(a == null) return false;
+    // a String does not know a LoxString can be equal to it
+    if(b instanceof LoxString) return b.equals(a);
+    return a.equals(b);
+  }
+
+  static void checkNumberOperand(Token operator, Object operand){
+    if(operand instanceof Double) return;
+    throw new RunTimeError(operator, "Operand must be a number");
+  }
+
+  static void checkNumberOperand(Token operator, Object left, Object right){
+    if(left instanceof Double && right instanceof Double) return;
+    throw new RunTimeError(operator, "Operand must be numbers");
+  }
+
+  static String doubleToStr(double x){
+    String str = String.valueOf(x);
+    if(str.endsWith(".0"))
+      return str.substring(0, str.length() - 2);
+    return str;
+  }
+
+  static void checkZeroDivision(Token operator, double x){
+    if(x == 0)
+        throw new RunTimeError(operator, "Division with zero is not permitted");
+    return;
+  }
+
+  Completion executeBlock(List<Stmt> statements, Environment environment){
+    Environment previousEnv = this.environment;
+    this.environment = environment;
+    for (Stmt stmt : statements) {
+      Completion completion = execute(stmt);
+      if(completion != Completion.NORMAL){
+        // break or return, skip the rest of the block
+        this.environment = previousEnv;
+        return completion;
+      }
+    }
+    this.environment = previousEnv;
+    return Completion.NORMAL;
+  }
+
+  @Override
+  public Object visitCallExpr(Expr.Call expr) {
+    Object callee = evaluate(expr.callee);
+    List<Expr> argumentExprs = expr.arguments;
+
+    // nothing is cached on the tree, other runtimes call their own functions from it
+    if(callee instanceof LoxFunction){
+      LoxFunction function = (LoxFunction)callee;
+      if(function.arity() == argumentExprs.size()){
+        Object[] arguments = new Object[function.frameSize()];
+        for(int i = 0; i < argumentExprs.size(); i++){
+          arguments[i] = evaluate(argumentExprs.get(i));
+        }
+        return function.call(this, arguments);
+      }
+    } else if(callee instanceof NativeFunction && ((NativeFunction)callee).arity() == argumentExprs.size()){
+      return callNative(expr, (NativeFunction)callee);
+    }
+
+    Object[] arguments = new Object[argumentExprs.size()];
+    for(int i = 0; i < arguments.length; i++){
+      arguments[i] = evaluate(argumentExprs.get(i));
+    }
+
+    if(!(callee instanceof LoxCallable)){
+      throw new RunTimeError(expr.paren, "Can only call functions and classes");
+    }
+
+    LoxCallable function = (LoxCallable)callee;
+
+    if(arguments.length != function.arity()) {
+      throw new RunTimeError(expr.paren, "Expexted " + function.arity() + " arguments but got " + arguments.length);
+    }
+    if(function.frameSize() > arguments.length){
+      arguments = Arrays.copyOf(arguments, function.frameSize());
+    }
+    return function.call(this, arguments);
+  }
+
+  // the arguments go straight to the fixed arity method, no array
+  private Object callNative(Expr.Call expr, NativeFunction function){
+    List<Expr> arguments = expr.arguments;
+    int count = arguments.size();
+    if(count > NativeFunction.MAX_FIXED){
+      Object[] values = new Object[count];
+      for(int i = 0; i < count; i++){
+        values[i] = evaluate(arguments.get(i));
+      }
+      return callNative(expr, function, values);
+    }
+    Object a = count > 0 ? evaluate(arguments.get(0)) : null;
+    Object b = count > 1 ? evaluate(arguments.get(1)) : null;
+    Object c = count > 2 ? evaluate(arguments.get(2)) : null;
+    try {
+      switch(count){
+        case 0: return function.call0();
+        case 1: return function.call1(a);
+        case 2: return function.call2(a, b);
+        default: return function.call3(a, b, c);
+      }
+    } catch (RuntimeException error) {
+      throw NativeFunction.failed(expr.paren, error);
+    }
+  }
+
+  private Object callNative(Expr.Call expr, NativeFunction function, Object[] arguments){
+    try {
+      return function.call(arguments);
+    } catch (RuntimeException error) {
+      throw NativeFunction.failed(expr.paren, error);
+    }
+  }
+
+  @Override
+  public Object visitGetExpr(Expr.Get expr){
+    Object object = evaluate(expr.object);
+    if(object instanceof LoxInstance){
+      return expr.cache.get((LoxInstance) object, expr.name);
+    }
+
+    throw new RunTimeError(expr.name, "Only instances have porperties");
+  }
+
+  @Override
+  public Object visitSetExpr(Expr.Set expr){
+    Object object = evaluate(expr.object);
+
+    if(!(object instanceof LoxInstance)){
+      throw new RunTimeError(expr.name, "Only instances have fields");
+    }
+
+    Object value = evaluate(expr.value);
+    expr.cache.set((LoxInstance)object, expr.name, value);
+    return value;
+  }
+
+  @Override
+  public Completion visitReturnStmt(Stmt.Return stmt) {
+    Object value = null;
+    if(stmt.value != null) value = evaluate(stmt.value);
+
+    returnValue = value;
+    return Completion.RETURN;
+  }
+
+
+  
+}
@@ -0,0 +1,612 @@
+package com.craftinginterpreters.lox;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.invoke.MethodHandles;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Second tier of the tree-walker (--jit). Once a LoxFunction has been called
+ * THRESHOLD times its body is turned into a JVM method of a hidden class, so
+ * HotSpot compiles Lox code like Java code.
+ *
+ * Only a pure numeric subset is compiled: numbers and booleans, locals of the
+ * function, arithmetic, comparisons, if, while, break, return and recursive
+ * calls. Anything else (strings, nil, print, globals, closures, objects)
+ * leaves the function in the Interpreter. Because the code has no side
+ * effects a Deopt can always be answered by running the call again.
+ *
+ * The class file is written by hand, version 49 so the verifier does not
+ * need stack map frames.
+ */
+final class JvmCompiler {
+  static boolean enabled = false;
+  static final int THRESHOLD = Integer.getInteger("jlox.jit.threshold", 1000);
+
+  private static final String SELF = "com/craftinginterpreters/lox/JitFunction";
+  private static final String SUPER = "com/craftinginterpreters/lox/CompiledFunction";
+
+  // static type of a value, every expression has exactly one
+  private static final int NUMBER = 0;
+  private static final int BOOLEAN = 1;
+
+  // opcodes
+  private static final int ICONST_0 = 0x03, ICONST_1 = 0x04, DCONST_0 = 0x0e, DCONST_1 = 0x0f;
+  private static final int BIPUSH = 0x10, SIPUSH = 0x11, LDC2_W = 0x14;
+  private static final int ILOAD = 0x15, DLOAD = 0x18, ALOAD_0 = 0x2a, ALOAD_1 = 0x2b, DALOAD = 0x31;
+  private static final int ISTORE = 0x36, DSTORE = 0x39;
+  private static final int POP = 0x57, POP2 = 0x58, DUP = 0x59, DUP2 = 0x5c;
+  private static final int DADD = 0x63, DSUB = 0x67, DMUL = 0x6b, DNEG = 0x77, IXOR = 0x82;
+  private static final int DCMPL = 0x97, DCMPG = 0x98;
+  private static final int IFEQ = 0x99, IFNE = 0x9a, IFLT = 0x9b, IFGE = 0x9c, IFGT = 0x9d, IFLE = 0x9e;
+  private static final int IF_ICMPEQ = 0x9f, IF_ICMPNE = 0xa0, GOTO = 0xa7;
+  private static final int DRETURN = 0xaf, RETURN = 0xb1;
+  private static final int INVOKEVIRTUAL = 0xb6, INVOKESPECIAL = 0xb7, INVOKESTATIC = 0xb8;
+
+  // the body uses something outside the subset
+  private static final class Unsupported extends RuntimeException {
+    Unsupported(){
+      super(null, null, false, false);
+    }
+  }
+
+  private static final class Local {
+    final int index;
+    final int type;
+
+    Local(int index, int type){
+      this.index = index;
+      this.type = type;
+    }
+  }
+
+  private static final class Label {
+    int position = -1;
+    final List<Integer> jumps = new ArrayList<>();
+  }
+
+  private final String name;
+  private final Expr.Function declaration;
+  private final boolean global;
+  private final String runDescriptor;
+  private final Pool pool = new Pool();
+
+  // the method being written
+  private byte[] code;
+  private int length;
+  private int stack;
+  private int maxStack;
+  private int maxLocals;
+  private List<Label> labels;
+
+  // a scope per Environment the Interpreter would create, indexed by slot
+  private final List<List<Local>> scopes = new ArrayList<>();
+  private final List<Label> loopEnds = new ArrayList<>();
+
+  private JvmCompiler(String name, Expr.Function declaration, boolean global){
+    this.name = name;
+    this.declaration = declaration;
+    this.global = global;
+    this.runDescriptor = "(" + "D".repeat(declaration.params.size()) + ")D";
+  }
+
+  // null when the body is outside the subset or the class does not load
+  static CompiledFunction compile(LoxFunction function, String name, Expr.Function declaration, Environment closure){
+    JvmCompiler compiler = new JvmCompiler(name, declaration, closure.enclosing == null);
+    byte[] bytes;
+    try {
+      bytes = compiler.classFile();
+    } catch (Unsupported unsupported) {
+      return null;
+    }
+
+    try {
+      Class<?> type = MethodHandles.lookup().defineHiddenClass(bytes, true).lookupClass();
+      CompiledFunction compiled = (CompiledFunction)type.getDeclaredConstructor().newInstance();
+      compiled.function = function;
+      compiled.globals = closure;
+      if(compiler.global){
+        compiled.global = closure.table().global(name);
+      }
+      return compiled;
+    } catch (ReflectiveOperationException | LinkageError | RunTimeError error) {
+      // a bug here must not break the script, it stays interpreted
+      return null;
+    }
+  }
+
+  // null if one of the count arguments is not a number
+  static double[] numbers(Object[] arguments, int count){
+    double[] values = new double[count];
+    for(int i = 0; i < count; i++){
+      Object argument = arguments[i];
+      if(!(argument instanceof Double)) return null;
+      values[i] = (double)argument;
+    }
+    return values;
+  }
+
+  private byte[] classFile(){
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    try(DataOutputStream out = new DataOutputStream(bytes)){
+      // the pool is only complete once the methods are written
+      ByteArrayOutputStream methods = new ByteArrayOutputStream();
+      DataOutputStream methodsOut = new DataOutputStream(methods);
+      constructor(methodsOut);
+      invoke(methodsOut);
+      run(methodsOut);
+      int thisClass = pool.classRef(SELF);
+      int superClass = pool.classRef(SUPER);
+
+      out.writeInt(0xcafebabe);
+      out.writeShort(0);
+      out.writeShort(49);
+      pool.write(out);
+      // public final super
+      out.writeShort(0x0031);
+      out.writeShort(thisClass);
+      out.writeShort(superClass);
+      out.writeShort(0);
+      out.writeShort(0);
+      out.writeShort(3);
+      methods.writeTo(out);
+      out.writeShort(0);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    return bytes.toByteArray();
+  }
+
+  private void constructor(DataOutputStream out) throws IOException {
+    begin(1);
+    op(ALOAD_0, 1);
+    invoke(INVOKESPECIAL, SUPER, "<init>", "()V", -1);
+    op(RETURN, 0);
+    end(out, 0x0001, "<init>", "()V");
+  }
+
+  // unpacks the argument array and calls run
+  private void invoke(DataOutputStream out) throws IOException {
+    begin(2);
+    op(ALOAD_0, 1);
+    for(int i = 0; i < declaration.params.size(); i++){
+      op(ALOAD_1, 1);
+      integer(i);
+      op(DALOAD, 0);
+    }
+    invoke(INVOKEVIRTUAL, SELF, "run", runDescriptor, 1 - 2 * declaration.params.size());
+    op(DRETURN, -2);
+    end(out, 0x0001, "invoke", "([D)D");
+  }
+
+  private void run(DataOutputStream out) throws IOException {
+    begin(1);
+    List<Local> parameters = new ArrayList<>();
+    for(int i = 0; i < declaration.params.size(); i++){
+      parameters.add(allocate(NUMBER));
+    }
+    scopes.add(parameters);
+    for(Stmt statement : declaration.body){
+      statement(statement);
+    }
+    // falling off the end returns nil, that is the Interpreter's job
+    invoke(INVOKESTATIC, SUPER, "noReturn", "()V", 0);
+    op(DCONST_0, 2);
+    op(DRETURN, -2);
+    end(out, 0x0011, "run", runDescriptor);
+  }
+
+  // STATEMENTS
+
+  private void statement(Stmt stmt){
+    if(stmt instanceof Stmt.Expression){
+      int type = expression(((Stmt.Expression)stmt).expression);
+      pop(type);
+    } else if(stmt instanceof Stmt.Var){
+      Stmt.Var var = (Stmt.Var)stmt;
+      if(var.initializer == null) throw new Unsupported();
+      int type = expression(var.initializer);
+      Local local = allocate(type);
+      scopes.get(scopes.size() - 1).add(local);
+      store(local);
+    } else if(stmt instanceof Stmt.Block){
+      scopes.add(new ArrayList<>());
+      for(Stmt statement : ((Stmt.Block)stmt).statements){
+        statement(statement);
+      }
+      scopes.remove(scopes.size() - 1);
+    } else if(stmt instanceof Stmt.If){
+      Stmt.If ifStmt = (Stmt.If)stmt;
+      Label otherwise = new Label();
+      Label end = new Label();
+      condition(ifStmt.condition);
+      jump(IFEQ, otherwise, -1);
+      statement(ifStmt.thenBranch);
+      jump(GOTO, end, 0);
+      place(otherwise);
+      if(ifStmt.elseBranch != null) statement(ifStmt.elseBranch);
+      place(end);
+    } else if(stmt instanceof Stmt.While){
+      Stmt.While whileStmt = (Stmt.While)stmt;
+      Label start = new Label();
+      Label end = new Label();
+      place(start);
+      // no condition once the Optimizer saw a literal true
+      if(whileStmt.condition != null){
+        condition(whileStmt.condition);
+        jump(IFEQ, end, -1);
+      }
+      loopEnds.add(end);
+      statement(whileStmt.body);
+      loopEnds.remove(loopEnds.size() - 1);
+      jump(GOTO, start, 0);
+      place(end);
+    } else if(stmt instanceof Stmt.Break){
+      if(loopEnds.isEmpty()) throw new Unsupported();
+      jump(GOTO, loopEnds.get(loopEnds.size() - 1), 0);
+    } else if(stmt instanceof Stmt.Return){
+      Stmt.Return returnStmt = (Stmt.Return)stmt;
+      if(returnStmt.value == null || expression(returnStmt.value) != NUMBER) throw new Unsupported();
+      op(DRETURN, -2);
+    } else {
+      // print, class, nested functions
+      throw new Unsupported();
+    }
+  }
+
+  private void condition(Expr expr){
+    // a number is always truthy, but then the loop or branch is odd enough to leave alone
+    if(expression(expr) != BOOLEAN) throw new Unsupported();
+  }
+
+  // EXPRESSIONS
+
+  // leaves the value on the stack and gives its type
+  private int expression(Expr expr){
+    if(expr instanceof Expr.Literal){
+      Object value = ((Expr.Literal)expr).value;
+      if(value instanceof Double){
+        number((double)value);
+        return NUMBER;
+      }
+      if(value instanceof Boolean){
+        op((boolean)value ? ICONST_1 : ICONST_0, 1);
+        return BOOLEAN;
+      }
+      throw new Unsupported();
+    }
+    if(expr instanceof Expr.Grouping){
+      return expression(((Expr.Grouping)expr).expression);
+    }
+    if(expr instanceof Expr.Variable){
+      Expr.Variable variable = (Expr.Variable)expr;
+      Local local = local(variable.depth, variable.slot);
+      load(local);
+      return local.type;
+    }
+    if(expr instanceof Expr.Assign){
+      Expr.Assign assign = (Expr.Assign)expr;
+      Local local = local(assign.depth, assign.slot);
+      // a local keeps one type for the whole body
+      if(expression(assign.value) != local.type) throw new Unsupported();
+      if(local.type == NUMBER) op(DUP2, 2);
+      else op(DUP, 1);
+      store(local);
+      return local.type;
+    }
+    if(expr instanceof Expr.Unary){
+      Expr.Unary unary = (Expr.Unary)expr;
+      int type = expression(unary.right);
+      if(unary.operator.type == TokenType.MINUS && type == NUMBER){
+        op(DNEG, 0);
+        return NUMBER;
+      }
+      if(unary.operator.type == TokenType.BANG && type == BOOLEAN){
+        op(ICONST_1, 1);
+        op(IXOR, -1);
+        return BOOLEAN;
+      }
+      throw new Unsupported();
+    }
+    if(expr instanceof Expr.Binary){
+      return binary((Expr.Binary)expr);
+    }
+    if(expr instanceof Expr.Logical){
+      Expr.Logical logical = (Expr.Logical)expr;
+      Label end = new Label();
+      if(expression(logical.left) != BOOLEAN) throw new Unsupported();
+      op(DUP, 1);
+      jump(logical.operator.type == TokenType.OR ? IFNE : IFEQ, end, -1);
+      op(POP, -1);
+      if(expression(logical.right) != BOOLEAN) throw new Unsupported();
+      place(end);
+      return BOOLEAN;
+    }
+    if(expr instanceof Expr.Call){
+      return call((Expr.Call)expr);
+    }
+    // functions, properties
+    throw new Unsupported();
+  }
+
+  private int binary(Expr.Binary expr){
+    int left = expression(expr.left);
+    int right = expression(expr.right);
+    if(left != right) throw new Unsupported();
+
+    if(left == BOOLEAN){
+      switch(expr.operator.type){
+        case EQUAL_EQUAL: return bool(IF_ICMPNE, -2);
+        case BANG_EQUAL: return bool(IF_ICMPEQ, -2);
+        default: throw new Unsupported();
+      }
+    }
+
+    switch(expr.operator.type){
+      case PLUS: op(DADD, -2); return NUMBER;
+      case MINUS: op(DSUB, -2); return NUMBER;
+      case STAR: op(DMUL, -2); return NUMBER;
+      case SLASH:
+        // division by zero is reported by the Interpreter
+        invoke(INVOKESTATIC, SUPER, "divide", "(DD)D", -2);
+        return NUMBER;
+      // NaN compares false, like in Java
+      case GREATER: op(DCMPL, -3); return bool(IFLE, -1);
+      case GREATER_EQUAL: op(DCMPL, -3); return bool(IFLT, -1);
+      case LESS: op(DCMPG, -3); return bool(IFGE, -1);
+      case LESS_EQUAL: op(DCMPG, -3); return bool(IFGT, -1);
+      // same as Double.equals, like isEqual
+      case EQUAL_EQUAL:
+        invoke(INVOKESTATIC, "java/lang/Double", "compare", "(DD)I", -3);
+        return bool(IFNE, -1);
+      case BANG_EQUAL:
+        invoke(INVOKESTATIC, "java/lang/Double", "compare", "(DD)I", -3);
+        return bool(IFEQ, -1);
+      default:
+        throw new Unsupported();
+    }
+  }
+
+  // turns a jump taken when false into 0 or 1 on the stack
+  private int bool(int jumpIfFalse, int delta){
+    Label isFalse = new Label();
+    Label end = new Label();
+    jump(jumpIfFalse, isFalse, delta);
+    op(ICONST_1, 1);
+    jump(GOTO, end, 0);
+    stack--;
+    place(isFalse);
+    op(ICONST_0, 1);
+    place(end);
+    return BOOLEAN;
+  }
+
+  private int call(Expr.Call expr){
+    // only the function calling itself by its global name
+    if(!global || !(expr.callee instanceof Expr.Variable)) throw new Unsupported();
+    Expr.Variable callee = (Expr.Variable)expr.callee;
+    if(callee.depth != -1 || !callee.name.lexeme.equals(name)) throw new Unsupported();
+    if(expr.arguments.size() != declaration.params.size()) throw new Unsupported();
+
+    op(ALOAD_0, 1);
+    invoke(INVOKEVIRTUAL, SUPER, "guard", "()V", -1);
+    op(ALOAD_0, 1);
+    for(Expr argument : expr.arguments){
+      if(expression(argument) != NUMBER) throw new Unsupported();
+    }
+    invoke(INVOKEVIRTUAL, SELF, "run", runDescriptor, 1 - 2 * expr.arguments.size());
+    return NUMBER;
+  }
+
+  // LOCALS
+
+  private Local local(int depth, int slot){
+    // globals and variables of enclosing functions
+    if(depth < 0 || depth >= scopes.size()) throw new Unsupported();
+    List<Local> scope = scopes.get(scopes.size() - 1 - depth);
+    if(slot >= scope.size()) throw new Unsupported();
+    return scope.get(slot);
+  }
+
+  private Local allocate(int type){
+    Local local = new Local(maxLocals, type);
+    maxLocals += type == NUMBER ? 2 : 1;
+    // no wide instructions
+    if(maxLocals > 255) throw new Unsupported();
+    return local;
+  }
+
+  private void load(Local local){
+    if(local.type == NUMBER) op(DLOAD, 2);
+    else op(ILOAD, 1);
+    u1(local.index);
+  }
+
+  private void store(Local local){
+    if(local.type == NUMBER) op(DSTORE, -2);
+    else op(ISTORE, -1);
+    u1(local.index);
+  }
+
+  private void pop(int type){
+    if(type == NUMBER) op(POP2, -2);
+    else op(POP, -1);
+  }
+
+  // CODE
+
+  private void begin(int locals){
+    code = new byte[64];
+    length = 0;
+    stack = 0;
+    maxStack = 0;
+    maxLocals = locals;
+    labels = new ArrayList<>();
+  }
+
+  private void end(DataOutputStream out, int access, String methodName, String descriptor) throws IOException {
+    for(Label label : labels){
+      for(int at : label.jumps){
+        int offset = label.position - at;
+        if(offset != (short)offset) throw new Unsupported();
+        code[at + 1] = (byte)(offset >> 8);
+        code[at + 2] = (byte)offset;
+      }
+    }
+    if(length > 0xffff) throw new Unsupported();
+
+    out.writeShort(access);
+    out.writeShort(pool.utf8(methodName));
+    out.writeShort(pool.utf8(descriptor));
+    out.writeShort(1);
+    out.writeShort(pool.utf8("Code"));
+    out.writeInt(12 + length);
+    out.writeShort(maxStack);
+    out.writeShort(maxLocals);
+    out.writeInt(length);
+    out.write(code, 0, length);
+    // no exception table, no attributes
+    out.writeShort(0);
+    out.writeShort(0);
+  }
+
+  private void op(int opcode, int delta){
+    u1(opcode);
+    stack += delta;
+    if(stack > maxStack) maxStack = stack;
+  }
+
+  private void u1(int value){
+    if(length == code.length) code = Arrays.copyOf(code, length * 2);
+    code[length++] = (byte)value;
+  }
+
+  private void u2(int value){
+    u1(value >> 8);
+    u1(value);
+  }
+
+  private void invoke(int opcode, String owner, String methodName, String descriptor, int delta){
+    op(opcode, delta);
+    u2(pool.methodRef(owner, methodName, descriptor));
+  }
+
+  private void jump(int opcode, Label target, int delta){
+    if(!labels.contains(target)) labels.add(target);
+    target.jumps.add(length);
+    op(opcode, delta);
+    u2(0);
+  }
+
+  private void place(Label label){
+    label.position = length;
+  }
+
+  private void number(double value){
+    if(Double.doubleToRawLongBits(value) == 0L){
+      op(DCONST_0, 2);
+    } else if(value == 1.0){
+      op(DCONST_1, 2);
+    } else {
+      op(LDC2_W, 2);
+      u2(pool.number(value));
+    }
+  }
+
+  private void integer(int value){
+    if(value <= 1){
+      op(value == 0 ? ICONST_0 : ICONST_1, 1);
+    } else if(value < 128){
+      op(BIPUSH, 1);
+      u1(value);
+    } else {
+      op(SIPUSH, 1);
+      u2(value);
+    }
+  }
+
+  // constant pool, entries are shared by key
+  private static final class Pool {
+    private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    private final DataOutputStream out = new DataOutputStream(bytes);
+    private final Map<String, Integer> entries = new HashMap<>();
+    private int count = 1;
+
+    int utf8(String value){
+      Integer index = entries.get("U" + value);
+      if(index != null) return index;
+      try {
+        out.writeByte(1);
+        out.writeUTF(value);
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+      return add("U" + value, 1);
+    }
+
+    int classRef(String internalName){
+      Integer index = entries.get("C" + internalName);
+      if(index != null) return index;
+      int nameIndex = utf8(internalName);
+      write(7, nameIndex);
+      return add("C" + internalName, 1);
+    }
+
+    int methodRef(String owner, String name, String descriptor){
+      String key = "M" + owner + "." + name + descriptor;
+      Integer index = entries.get(key);
+      if(index != null) return index;
+      int ownerIndex = classRef(owner);
+      int nameIndex = utf8(name);
+      int descriptorIndex = utf8(descriptor);
+      Integer nameAndType = entries.get("N" + name + descriptor);
+      if(nameAndType == null){
+        write(12, nameIndex, descriptorIndex);
+        nameAndType = add("N" + name + descriptor, 1);
+      }
+      write(10, ownerIndex, nameAndType);
+      return add(key, 1);
+    }
+
+    int number(double value){
+      String key = "D" + Double.doubleToRawLongBits(value);
+      Integer index = entries.get(key);
+      if(index != null) return index;
+      try {
+        out.writeByte(6);
+        out.writeDouble(value);
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+      // a double takes two entries
+      return add(key, 2);
+    }
+
+    void write(DataOutputStream to) throws IOException {
+      to.writeShort(count);
+      bytes.writeTo(to);
+    }
+
+    private void write(int tag, int... indexes){
+      try {
+        out.writeByte(tag);
+        for(int index : indexes) out.writeShort(index);
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+    }
+
+    private int add(String key, int size){
+      int index = count;
+      entries.put(key, index);
+      count += size;
+      return index;
+    }
+  }
+}
@@ -0,0 +1,218 @@
+package com.craftinginterpreters.lox;
+
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+// import java.util.Scanner;
+
+public class Lox {
+  private static final Interpreter interpreter = new Interpreter();
+  private static VM vm = null;
+  // --closures compiles the tree into lambdas before running it
+  private static ClosureInterpreter closures = null;
+  // resolved trees of scripts are cached on disk, --no-cache turns it off
+  private static boolean useCache = true;
+  // the statement list dump before running, --no-dump turns it off
+  private static boolean dumpAst = true;
+  // --stream runs each top-level statement as soon as it is read
+  private static boolean stream = false;
+  // --parallel parses top-level declarations on all cores
+  private static boolean parallel = false;
+  // the Optimizer rewrites the resolved tree, --no-optimize turns it off
+  private static boolean optimize = true;
+  // print goes through here, flushed before the prompt, errors and exit
+  private static final OutputSink out = OutputSink.stdout();
+  static boolean hadError = false;
+  static boolean hadRunTimeError = false;
+  // set while a LoxRuntime parses or runs on this thread, errors go there
+  private static final ThreadLocal<ErrorReporter> reporter = new ThreadLocal<>();
+  public static void main(String[] args) throws IOException {
+    // --vm runs the bytecode backend, the tree-walker stays the default
+    int flags = 0;
+    while(flags < args.length && args[flags].startsWith("--")){
+      if(args[flags].equals("--vm")){
+        vm = new VM();
+      } else if(args[flags].equals("--jit")){
+        JvmCompiler.enabled = true;
+      } else if(args[flags].equals("--closures")){
+        closures = new ClosureInterpreter();
+      } else if(args[flags].equals("--no-cache")){
+        useCache = false;
+      } else if(args[flags].equals("--no-dump")){
+        dumpAst = false;
+      } else if(args[flags].equals("--stream")){
+        stream = true;
+      } else if(args[flags].equals("--parallel")){
+        parallel = true;
+      } else if(args[flags].equals("--no-optimize")){
+        optimize = false;
+      } else {
+        break;
+      }
+      flags++;
+    }
+    args = Arrays.copyOfRange(args, flags, args.length);
+
+    if(args.length > 1){
+      System.out.println("Usage: jlox [--vm] [--closures] [--jit] [--no-cache] [--no-dump] [--stream] [--parallel] [--no-optimize] [Script]");
+      System.exit(64);
+    } else if (args.length == 1){
+      runFile(args[0]);
+    }else {
+      // runFile("./langtest/func.jlox");
+      runPrompt();
+    }
+  }
+  private static void runFile(String path) throws IOException {
+    Path script = Paths.get(path);
+    if(stream){
+      runStream(script);
+      out.flush();
+      if(hadError) System.exit(65);
+      if(hadRunTimeError) System.exit(70);
+      return;
+    }
+    byte[] bytes = Files.readAllBytes(script);
+    run(new String(bytes, Charset.defaultCharset()), useCache ? script : null);
+    out.flush();
+    if(hadError) System.exit(65);
+    if(hadRunTimeError) System.exit(70);
+  }
+
+  private static void runPrompt() throws IOException {
+    InputStreamReader input = new InputStreamReader(System.in);
+    BufferedReader reader = new BufferedReader(input);
+
+    for(;;){
+      out.flush();
+      System.out.print(">");
+      String line = reader.readLine();
+      if(line == null) break;
+      run(line, null);
+      hadError = false;
+    }
+  }
+  // script is null for the prompt or when caching is off
+  private static void run(String source, Path script){
+    List<Stmt> statements = script != null ? AstCache.load(script, source) : null;
+    if(statements != null){
+      if(dumpAst) out.println(statements.toString());
+    } else {
+      statements = parse(source);
+      if(hadError) return;
+      if(script != null) AstCache.store(script, source, statements);
+    }
+    // the cache holds the tree as resolved, optimizing it again is cheap
+    if(optimize) statements = new Optimizer().optimize(statements);
+    execute(statements);
+  }
+
+  // the script is never held whole: the scanner reads it in chunks, the
+  // parser pulls tokens from it, and each top-level statement is resolved
+  // and run before the next one is parsed. No cache and no dump here.
+  // Statements before an error have already run, after it the rest is
+  // still parsed and resolved for diagnostics but not run
+  private static void runStream(Path script) throws IOException {
+    try(Reader reader = new InputStreamReader(Files.newInputStream(script), Charset.defaultCharset())){
+      Parser parser = new Parser(new Scanner(reader).tokens());
+      Resolver resolver = new Resolver();
+      Optimizer optimizer = new Optimizer();
+      while(parser.hasNext()){
+        Stmt statement = parser.next();
+        if(statement == null) continue;
+        List<Stmt> single = Collections.singletonList(statement);
+        resolver.resolve(single);
+        if(hadError || hadRunTimeError) continue;
+        if(optimize) single = optimizer.optimize(single);
+        execute(single);
+      }
+    }
+  }
+
+  private static void execute(List<Stmt> statements){
+    if(vm != null){
+      Chunk chunk = new Compiler(vm.globals.table()).compile(statements);
+      if(hadError) return;
+      vm.interpret(chunk);
+      return;
+    }
+    if(closures != null){
+      closures.interpret(statements);
+      return;
+    }
+    //interpreter
+    interpreter.interpreter(statements);
+    // for (Token token : tokens) {
+    //   System.out.println(token);
+    // }
+  }
+
+  // scan, parse and resolve, the tree comes back ready to run
+  private static List<Stmt> parse(String source){
+    Scanner scanner = new Scanner(source);
+    TokenBuffer tokens = scanner.scan();
+    List<Stmt> statements;
+    if(parallel){
+      statements = ParallelParser.parse(tokens);
+    } else {
+      Parser parser = new Parser(tokens);
+      statements = parser.parse();
+    }
+    if(hadError) return statements;
+    if(dumpAst) out.println(statements.toString());
+    // System.out.println(new AstPrinter().print(expression));
+    Resolver resolver = new Resolver();
+    resolver.resolve(statements);
+    return statements;
+  }
+
+  static void error(Token token, String message){
+    if(token.type == TokenType.EOF){
+      report(token.line, "", message);
+    } else {
+      report(token.line, "at '" + token.lexeme + "'", message);
+    }
+  }
+  static void error(int line, String message){
+      report(line, "", message);
+  }
+
+  // the previous one comes back, to be put back when done
+  static ErrorReporter install(ErrorReporter errors){
+    ErrorReporter previous = reporter.get();
+    if(errors == null) reporter.remove();
+    else reporter.set(errors);
+    return previous;
+  }
+
+  private static void report(int line, String where, String message){
+    ErrorReporter errors = reporter.get();
+    if(errors != null){
+      errors.report(line, where, message);
+      return;
+    }
+    out.flush();
+    System.err.println("[line " + line + "] Error " + where + " : " + message);
+    hadError = true;
+  }
+
+  static void runtimeError(RunTimeError error){
+    ErrorReporter errors = reporter.get();
+    if(errors != null){
+      errors.runtimeError(error);
+      return;
+    }
+    out.flush();
+    System.out.print(error.getMessage() + "\n[line " + error.token.line + "]");
+    hadRunTimeError = true;
+  }
+}
@@ -0,0 +1,18 @@
+package com.craftinginterpreters.lox;
+import java.util.Arrays;
+import java.util.List;
+
+public interface LoxCallable {
+  int arity();
+  Object call(Interpreter interpreter, List<Object> arguments);
+
+  // how big the argument array should be, a function keeps its locals after the arguments
+  default int frameSize(){
+    return arity();
+  }
+
+  // the arguments come first in the array, a function takes it as its frame
+  default Object call(Interpreter interpreter, Object[] arguments){
+    return call(interpreter, Arrays.asList(arguments).subList(0, arity()));
+  }
+}
@@ -0,0 +1,54 @@
+package com.craftinginterpreters.lox;
+
+import java.util.List;
+
+public class LoxClass implements LoxCallable {
+  final String name;
+  private final Stmt.Class declaration;
+  // in declaration order, the same slots in every class made from the declaration
+  private final LoxCallable[] methods;
+  // every instance starts here, see Shape
+  final Shape rootShape;
+
+  LoxClass(Stmt.Class declaration, LoxCallable[] methods){
+    this.name = declaration.name.lexeme;
+    this.declaration = declaration;
+    this.methods = methods;
+    this.rootShape = declaration.shape;
+  }
+
+  @Override
+  public int arity(){
+    return 0;
+  }
+
+  @Override
+  public Object call(Interpreter interpreter, List<Object> arguments){
+    LoxInstance instance = new LoxInstance(this);
+    return instance;
+  }
+  
+
+  @Override
+  public String toString(){
+    return name;
+  }
+
+  LoxCallable findMethod(String name){
+    int slot = methodSlot(name);
+    return slot < 0 ? null : methods[slot];
+  }
+
+  // -1 if there is none, the last one wins when a name is declared twice
+  int methodSlot(String name){
+    List<Stmt.Function> declared = declaration.methods;
+    for(int i = declared.size() - 1; i >= 0; i--){
+      if(declared.get(i).name.lexeme.equals(name)) return i;
+    }
+    return -1;
+  }
+
+  LoxCallable method(int slot){
+    return methods[slot];
+  }
+}
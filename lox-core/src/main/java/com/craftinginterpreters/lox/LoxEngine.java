@@ -0,0 +1,22 @@
+package com.craftinginterpreters.lox;
+
+/**
+ * Entry point for running the same scripts many times from another program.
+ *
+ * compile() does the scanning, parsing, resolving and optimizing once, the
+ * CompiledScript it returns is then executed as often as needed, on any
+ * thread, each time in a Context. The scripts start with the natives of
+ * the engine as globals, register host functions on natives() before
+ * running anything.
+ */
+public final class LoxEngine {
+  private final Natives natives = new Natives();
+
+  public Natives natives(){
+    return natives;
+  }
+
+  public CompiledScript compile(String source) throws LoxRuntime.ScriptError {
+    return new CompiledScript(LoxRuntime.parse(source), natives);
+  }
+}
@@ -0,0 +1,73 @@
+package com.craftinginterpreters.lox;
+import java.util.List;
+
+public class LoxFunction implements LoxCallable {
+  private final String name;
+  private final Expr.Function declaration;
+  private final Environment closure;
+  // --jit: after JvmCompiler.THRESHOLD calls the body may run as JVM code
+  private int calls = 0;
+  private CompiledFunction compiled = null;
+
+  LoxFunction(String name, Expr.Function declaration, Environment closure){
+    this.name = name;
+    this.declaration = declaration;
+    this.closure = closure;
+  }
+
+  @Override
+  public String toString(){
+    if(name == null) return "<fn>";
+    return "<fn " + name + ">";
+  }
+
+
+  @Override
+  public int arity() {
+    return declaration.params.size();
+  }
+
+
+  @Override
+  public int frameSize() {
+    return declaration.slots;
+  }
+
+  @Override
+  public Object call(Interpreter interpreter, List<Object> arguments) {
+    Object[] frame = new Object[frameSize()];
+    for(int i = 0; i < arguments.size(); i++){
+      frame[i] = arguments.get(i);
+    }
+    return call(interpreter, frame);
+  }
+
+  @Override
+  public Object call(Interpreter interpreter, Object[] arguments) {
+    if(JvmCompiler.enabled && calls < JvmCompiler.THRESHOLD && ++calls == JvmCompiler.THRESHOLD){
+      compiled = JvmCompiler.compile(this, name, declaration, closure);
+    }
+    if(compiled != null){
+      double[] values = JvmCompiler.numbers(arguments, declaration.params.size());
+      if(values != null){
+        try {
+          return Interpreter.box(compiled.invoke(values));
+        } catch (CompiledFunction.Deopt deopt) {
+          // back to the tree for good, the call runs again below
+          compiled = null;
+        }
+      }
+    }
+
+    // the argument array is the frame, the locals of the body go after the parameters
+    Environment environment = new Environment(closure, arguments, declaration.params.size());
+
+    Interpreter.Completion completion = interpreter.executeBlock(declaration.body, environment);
+    if(completion == Interpreter.Completion.RETURN){
+      return interpreter.takeReturnValue();
+    }
+
+    return null;
+  }
+  
+}
@@ -0,0 +1,50 @@
+package com.craftinginterpreters.lox;
+
+import java.util.Arrays;
+
+
+public class LoxInstance {
+  final LoxClass klass;
+
+  // the shape says which field is at which index
+  Shape shape;
+  Object[] fields = new Object[4];
+
+  LoxInstance(LoxClass klass){
+    this.klass = klass;
+    this.shape = klass.rootShape;
+  }
+
+  Object get(Token name){
+    int index = shape.indexOf(name.lexeme);
+    if(index >= 0){
+      return fields[index];
+    }
+
+    LoxCallable method = klass.findMethod(name.lexeme);
+    if(method != null) return method;
+    throw new RunTimeError(name, "Undefined property '" + name.lexeme + "'.");
+  }
+
+  void set(Token name, Object value){
+    int index = shape.indexOf(name.lexeme);
+    if(index >= 0){
+      fields[index] = value;
+      return;
+    }
+    addField(shape.withField(name.lexeme), shape.size, value);
+  }
+
+  void addField(Shape next, int index, Object value){
+    if(index == fields.length){
+      fields = Arrays.copyOf(fields, fields.length * 2);
+    }
+    fields[index] = value;
+    shape = next;
+  }
+
+  @Override
+  public String toString(){
+    return klass.name + " instance";
+  }
+}
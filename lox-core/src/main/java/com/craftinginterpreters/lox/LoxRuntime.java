@@ -0,0 +1,126 @@
+package com.craftinginterpreters.lox;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Runs Lox inside another program, many scripts at once on as many threads.
+ *
+ * parse() scans, parses, resolves and optimizes a source once into a Script.
+ * The tree of a Script is not changed afterwards (the per-site caches on it
+ * are safe to share), so any thread can run it. Each LoxRuntime is one
+ * isolated execution: its own globals and interpreter, its own output and
+ * its own errors. A LoxRuntime is used by one thread at a time; globals
+ * stay defined from one run to the next, like in the prompt.
+ *
+ * Nothing here goes through the static state of the command line.
+ */
+public final class LoxRuntime {
+  // resolved and optimized, read only from here on
+  public static final class Script {
+    final List<Stmt> statements;
+    // the indexes of its global names, the sites of the tree keep them
+    final Environment.Globals globals = new Environment.Globals();
+
+    private Script(List<Stmt> statements){
+      this.statements = statements;
+    }
+  }
+
+  // the source did not scan, parse or resolve
+  public static final class ScriptError extends Exception {
+    private final List<String> errors;
+
+    private ScriptError(List<String> errors){
+      super(String.join("\n", errors));
+      this.errors = Collections.unmodifiableList(errors);
+    }
+
+    public List<String> errors(){
+      return errors;
+    }
+  }
+
+  private final Interpreter interpreter = new Interpreter();
+  private final ErrorReporter errors = new ErrorReporter();
+
+  // output gets each printed line
+  public LoxRuntime(Consumer<String> output){
+    this(output, Natives.STANDARD);
+  }
+
+  // with the natives of the registry instead of the standard ones
+  public LoxRuntime(Consumer<String> output, Natives natives){
+    reset(natives);
+    interpreter.setOutput(new OutputSink(){
+      @Override
+      public void println(String line){
+        output.accept(line);
+      }
+
+      @Override
+      public void flush(){
+      }
+    });
+  }
+
+  public static Script parse(String source) throws ScriptError {
+    ErrorReporter errors = new ErrorReporter();
+    ErrorReporter previous = Lox.install(errors);
+    try {
+      List<Stmt> statements = new Parser(new Scanner(source).scan()).parse();
+      if(!errors.hadError) new Resolver().resolve(statements);
+      if(errors.hadError) throw new ScriptError(new ArrayList<>(errors.messages));
+      return new Script(new Optimizer().optimize(statements));
+    } finally {
+      Lox.install(previous);
+    }
+  }
+
+  // on the calling thread, false if the script stopped on a runtime error
+  public boolean run(Script script){
+    errors.clear();
+    // what the previous scripts defined stays, moved to this one's indexes
+    interpreter.globals.use(script.globals);
+    ErrorReporter previous = Lox.install(errors);
+    try {
+      interpreter.interpreter(script.statements);
+    } finally {
+      Lox.install(previous);
+    }
+    return !errors.hadRunTimeError;
+  }
+
+  // the runtime errors of the last run
+  public List<String> errors(){
+    return List.copyOf(errors.messages);
+  }
+
+  // null when the last run went to the end
+  RunTimeError lastError(){
+    return errors.lastRuntimeError;
+  }
+
+  // back to only the natives
+  void reset(Natives natives){
+    interpreter.globals.clear();
+    natives.install(interpreter.globals);
+  }
+
+  // back to only the natives, laid out for the script, see Context
+  void reset(Natives natives, Script script){
+    interpreter.globals.clear();
+    interpreter.globals.use(script.globals);
+    natives.install(interpreter.globals);
+  }
+
+  void define(String name, Object value){
+    interpreter.globals.define(name, value);
+  }
+
+  Object get(String name){
+    return interpreter.globals.lookup(name);
+  }
+}
@@ -0,0 +1,99 @@
+package com.craftinginterpreters.lox;
+
+import java.util.ArrayDeque;
+
+/**
+ * A string built by +, kept as a concatenation tree (rope) until something
+ * needs its characters: printing, equality, hashing. Adding to a long string
+ * in a loop is then O(1) per step instead of copying the whole thing.
+ *
+ * At run time a Lox string is either a java String or a LoxString, short
+ * results are still copied into a plain String.
+ */
+final class LoxString implements CharSequence {
+  // below this a copy is cheaper than a node
+  private static final int MIN_ROPE = 256;
+
+  private final int length;
+  // String or LoxString each, null once flattened
+  private Object left;
+  private Object right;
+  private String flat;
+
+  private LoxString(Object left, Object right, int length){
+    this.left = left;
+    this.right = right;
+    this.length = length;
+  }
+
+  static boolean isString(Object value){
+    return value instanceof String || value instanceof LoxString;
+  }
+
+  // both sides are strings, see isString
+  static Object concat(Object left, Object right){
+    int length = ((CharSequence)left).length() + ((CharSequence)right).length();
+    if(length < MIN_ROPE) return left.toString() + right.toString();
+    return new LoxString(left, right, length);
+  }
+
+  @Override
+  public int length(){
+    return length;
+  }
+
+  @Override
+  public char charAt(int index){
+    return toString().charAt(index);
+  }
+
+  @Override
+  public CharSequence subSequence(int start, int end){
+    return toString().subSequence(start, end);
+  }
+
+  @Override
+  public String toString(){
+    if(flat == null) flatten();
+    return flat;
+  }
+
+  private void flatten(){
+    // a loop builds a tree as deep as it is long, no recursion here
+    StringBuilder builder = new StringBuilder(length);
+    ArrayDeque<Object> pending = new ArrayDeque<>();
+    pending.push(this);
+    while(!pending.isEmpty()){
+      Object piece = pending.pop();
+      if(piece instanceof String){
+        builder.append((String)piece);
+        continue;
+      }
+      LoxString node = (LoxString)piece;
+      if(node.flat != null){
+        builder.append(node.flat);
+      } else {
+        pending.push(node.right);
+        pending.push(node.left);
+      }
+    }
+    flat = builder.toString();
+    // the pieces can go now
+    left = null;
+    right = null;
+  }
+
+  @Override
+  public boolean equals(Object other){
+    if(this == other) return true;
+    if(!isString(other)) return false;
+    if(((CharSequence)other).length() != length) return false;
+    return toString().equals(other.toString());
+  }
+
+  @Override
+  public int hashCode(){
+    // same as the flat String, a LoxString and a String can be equal
+    return toString().hashCode();
+  }
+}
@@ -0,0 +1,11 @@
+package com.craftinginterpreters.lox;
+
+/**
+ * Thrown by a native function for a bad argument or a failed operation.
+ * The call site turns it into a runtime error at the line of the call.
+ */
+public class NativeError extends RuntimeException {
+  public NativeError(String message){
+    super(message);
+  }
+}
@@ -0,0 +1,86 @@
+package com.craftinginterpreters.lox;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A function written in Java, see Natives. The interpreters call the fixed
+ * arity methods directly with the evaluated arguments, up to three of them,
+ * so a native call does not allocate an argument array or list. The other
+ * calls, and natives with more parameters, go through call(Object[]).
+ */
+abstract class NativeFunction implements LoxCallable {
+  // the fast paths stop here
+  static final int MAX_FIXED = 3;
+
+  final String name;
+  private final int arity;
+
+  NativeFunction(String name, int arity){
+    this.name = name;
+    this.arity = arity;
+  }
+
+  // only the one matching the arity is ever called
+  Object call0(){
+    return call(new Object[0]);
+  }
+
+  Object call1(Object a){
+    return call(new Object[]{a});
+  }
+
+  Object call2(Object a, Object b){
+    return call(new Object[]{a, b});
+  }
+
+  Object call3(Object a, Object b, Object c){
+    return call(new Object[]{a, b, c});
+  }
+
+  abstract Object call(Object[] arguments);
+
+  // the arguments are already checked against the arity
+  final Object callFixed(Object[] arguments, int from){
+    switch(arity){
+      case 0: return call0();
+      case 1: return call1(arguments[from]);
+      case 2: return call2(arguments[from], arguments[from + 1]);
+      case 3: return call3(arguments[from], arguments[from + 1], arguments[from + 2]);
+      default: return call(from == 0 && arguments.length == arity
+          ? arguments : Arrays.copyOfRange(arguments, from, from + arity));
+    }
+  }
+
+  @Override
+  public int arity(){
+    return arity;
+  }
+
+  @Override
+  public Object call(Interpreter interpreter, List<Object> arguments){
+    return call(arguments.toArray());
+  }
+
+  @Override
+  public Object call(Interpreter interpreter, Object[] arguments){
+    return callFixed(arguments, 0);
+  }
+
+  // whatever the native threw, as a runtime error at the call
+  static RunTimeError failed(Token paren, RuntimeException error){
+    if(error instanceof RunTimeError) return (RunTimeError)error;
+    return new RunTimeError(paren, message(error));
+  }
+
+  static String message(RuntimeException error){
+    if(error instanceof NativeError) return error.getMessage();
+    // a host exception, keep its type
+    return error.toString();
+  }
+
+  @Override
+  public String toString(){
+    return "<native fn>";
+  }
+}
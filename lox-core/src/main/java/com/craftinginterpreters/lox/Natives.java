@@ -0,0 +1,264 @@
+package com.craftinginterpreters.lox;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * The functions written in Java that scripts start with as globals.
+ *
+ * A new registry has the standard ones (clock, math, strings), more are
+ * added with define(): a lambda of the fixed arity interfaces, called with
+ * no argument array, or a MethodHandle to any host method. Numbers reach a
+ * MethodHandle as its primitive parameter type and strings as String,
+ * anything else is checked against the parameter type. On the way back any
+ * Number becomes a Lox number and a result that is no Lox value is an
+ * error. A bad argument is a runtime error in the script, as is any
+ * exception the function throws.
+ *
+ * Define everything before running scripts, the registry is then only read.
+ */
+public final class Natives {
+  public interface Call0 { Object call0(); }
+  public interface Call1 { Object call1(Object a); }
+  public interface Call2 { Object call2(Object a, Object b); }
+  public interface Call3 { Object call3(Object a, Object b, Object c); }
+  public interface CallN { Object call(Object[] arguments); }
+
+  // the ones the command line and the interpreters start with
+  static final Natives STANDARD = new Natives();
+
+  private final Map<String, NativeFunction> functions = new LinkedHashMap<>();
+
+  public Natives(){
+    define("clock", () -> System.currentTimeMillis() / 1000.0);
+
+    define("abs", a -> Math.abs(number(a)));
+    define("floor", a -> Math.floor(number(a)));
+    define("sqrt", a -> Math.sqrt(number(a)));
+    define("pow", (a, b) -> Math.pow(number(a), number(b)));
+    define("min", (a, b) -> Math.min(number(a), number(b)));
+    define("max", (a, b) -> Math.max(number(a), number(b)));
+
+    define("len", a -> (double)string(a).length());
+    define("str", a -> Interpreter.stringify(a));
+    define("substring", (a, b, c) -> {
+      String text = string(a);
+      int start = index(b, text);
+      int end = index(c, text);
+      if(start > end) throw new NativeError("Start past the end.");
+      return text.substring(start, end);
+    });
+  }
+
+  public Natives define(String name, Call0 function){
+    return add(new NativeFunction(name, 0){
+      @Override
+      Object call0(){ return toLox(function.call0()); }
+
+      @Override
+      Object call(Object[] arguments){ return toLox(function.call0()); }
+    });
+  }
+
+  public Natives define(String name, Call1 function){
+    return add(new NativeFunction(name, 1){
+      @Override
+      Object call1(Object a){ return toLox(function.call1(a)); }
+
+      @Override
+      Object call(Object[] arguments){ return toLox(function.call1(arguments[0])); }
+    });
+  }
+
+  public Natives define(String name, Call2 function){
+    return add(new NativeFunction(name, 2){
+      @Override
+      Object call2(Object a, Object b){ return toLox(function.call2(a, b)); }
+
+      @Override
+      Object call(Object[] arguments){ return toLox(function.call2(arguments[0], arguments[1])); }
+    });
+  }
+
+  public Natives define(String name, Call3 function){
+    return add(new NativeFunction(name, 3){
+      @Override
+      Object call3(Object a, Object b, Object c){ return toLox(function.call3(a, b, c)); }
+
+      @Override
+      Object call(Object[] arguments){ return toLox(function.call3(arguments[0], arguments[1], arguments[2])); }
+    });
+  }
+
+  public Natives define(String name, int arity, CallN function){
+    if(arity < 0 || arity > 255) throw new IllegalArgumentException("Bad arity: " + arity);
+    return add(new NativeFunction(name, arity){
+      @Override
+      Object call(Object[] arguments){ return toLox(function.call(arguments)); }
+    });
+  }
+
+  // e.g. define("hypot", lookup.findStatic(Math.class, "hypot", methodType(double.class, double.class, double.class)))
+  public Natives define(String name, MethodHandle handle){
+    MethodHandle target = adapt(handle.asFixedArity());
+    int arity = target.type().parameterCount();
+    if(arity > 255) throw new IllegalArgumentException("Too many parameters: " + handle);
+    MethodHandle spread = target.asSpreader(Object[].class, arity);
+    return add(new NativeFunction(name, arity){
+      // the handles are typed (Object...)Object, invokeExact needs the casts
+      @Override
+      Object call0(){
+        try { return (Object)target.invokeExact(); } catch (Throwable error) { throw rethrow(error); }
+      }
+
+      @Override
+      Object call1(Object a){
+        try { return (Object)target.invokeExact(a); } catch (Throwable error) { throw rethrow(error); }
+      }
+
+      @Override
+      Object call2(Object a, Object b){
+        try { return (Object)target.invokeExact(a, b); } catch (Throwable error) { throw rethrow(error); }
+      }
+
+      @Override
+      Object call3(Object a, Object b, Object c){
+        try { return (Object)target.invokeExact(a, b, c); } catch (Throwable error) { throw rethrow(error); }
+      }
+
+      @Override
+      Object call(Object[] arguments){
+        try { return (Object)spread.invokeExact(arguments); } catch (Throwable error) { throw rethrow(error); }
+      }
+    });
+  }
+
+  private Natives add(NativeFunction function){
+    functions.put(function.name, function);
+    return this;
+  }
+
+  // into the globals of an interpreter or a VM
+  void install(Environment globals){
+    for(NativeFunction function : functions.values()){
+      globals.define(function.name, function);
+    }
+  }
+
+  // argument checks for the functions given to define
+
+  public static double number(Object value){
+    if(value instanceof Double) return (Double)value;
+    throw new NativeError("Expected a number but got " + Interpreter.stringify(value) + ".");
+  }
+
+  public static String string(Object value){
+    if(LoxString.isString(value)) return value.toString();
+    throw new NativeError("Expected a string but got " + Interpreter.stringify(value) + ".");
+  }
+
+  public static boolean bool(Object value){
+    if(value instanceof Boolean) return (Boolean)value;
+    throw new NativeError("Expected a boolean but got " + Interpreter.stringify(value) + ".");
+  }
+
+  private static int index(Object value, String text){
+    double number = number(value);
+    if(number != (int)number || number < 0 || number > text.length()){
+      throw new NativeError("Index out of range: " + Interpreter.stringify(value) + ".");
+    }
+    return (int)number;
+  }
+
+  // what a host function returns, as a Lox value
+  static Object toLox(Object value){
+    if(value == null || value instanceof Double || value instanceof Boolean
+        || LoxString.isString(value) || value instanceof LoxCallable || value instanceof LoxInstance){
+      return value;
+    }
+    if(value instanceof Number) return Interpreter.box(((Number)value).doubleValue());
+    if(value instanceof CharSequence) return value.toString();
+    throw new NativeError("Not a Lox value: " + value.getClass().getName() + ".");
+  }
+
+  // a rope is not something the host knows
+  private static Object toHost(Object value){
+    return value instanceof LoxString ? value.toString() : value;
+  }
+
+  private static Object checked(Class<?> type, Object value){
+    if(value == null || type.isInstance(value)) return value;
+    throw new NativeError("Expected " + type.getSimpleName() + " but got " + Interpreter.stringify(value) + ".");
+  }
+
+  private static RuntimeException rethrow(Throwable error){
+    if(error instanceof RuntimeException) return (RuntimeException)error;
+    if(error instanceof Error) throw (Error)error;
+    return new NativeError(error.toString());
+  }
+
+  private static final MethodHandle NUMBER;
+  private static final MethodHandle STRING;
+  private static final MethodHandle BOOL;
+  private static final MethodHandle CHECKED;
+  private static final MethodHandle BOX;
+  private static final MethodHandle TO_LOX;
+  private static final MethodHandle TO_HOST;
+
+  static {
+    try {
+      MethodHandles.Lookup lookup = MethodHandles.lookup();
+      NUMBER = lookup.findStatic(Natives.class, "number", MethodType.methodType(double.class, Object.class));
+      STRING = lookup.findStatic(Natives.class, "string", MethodType.methodType(String.class, Object.class));
+      BOOL = lookup.findStatic(Natives.class, "bool", MethodType.methodType(boolean.class, Object.class));
+      CHECKED = lookup.findStatic(Natives.class, "checked", MethodType.methodType(Object.class, Class.class, Object.class));
+      BOX = lookup.findStatic(Interpreter.class, "box", MethodType.methodType(Double.class, double.class));
+      TO_LOX = lookup.findStatic(Natives.class, "toLox", MethodType.methodType(Object.class, Object.class));
+      TO_HOST = lookup.findStatic(Natives.class, "toHost", MethodType.methodType(Object.class, Object.class));
+    } catch (ReflectiveOperationException error) {
+      throw new ExceptionInInitializerError(error);
+    }
+  }
+
+  // to (Object...)Object, with the Lox values checked and converted on the way in and out
+  private static MethodHandle adapt(MethodHandle handle){
+    MethodType type = handle.type();
+    for(int i = 0; i < type.parameterCount(); i++){
+      Class<?> parameter = type.parameterType(i);
+      MethodHandle filter;
+      if(parameter == boolean.class){
+        filter = BOOL;
+      } else if(parameter == char.class){
+        throw new IllegalArgumentException("No Lox value for a char parameter: " + handle);
+      } else if(parameter.isPrimitive()){
+        // Lox numbers are doubles, narrowed as a cast would
+        handle = MethodHandles.explicitCastArguments(handle, handle.type().changeParameterType(i, double.class));
+        filter = NUMBER;
+      } else if(parameter == String.class || parameter == CharSequence.class){
+        filter = STRING.asType(MethodType.methodType(parameter, Object.class));
+      } else if(parameter == Object.class){
+        filter = TO_HOST;
+      } else {
+        filter = MethodHandles.insertArguments(CHECKED, 0, parameter)
+            .asType(MethodType.methodType(parameter, Object.class));
+      }
+      handle = MethodHandles.filterArguments(handle, i, filter);
+    }
+
+    Class<?> result = type.returnType();
+    if(result == char.class){
+      throw new IllegalArgumentException("No Lox value for a char result: " + handle);
+    } else if(result.isPrimitive() && result != boolean.class && result != void.class){
+      handle = MethodHandles.explicitCastArguments(handle, handle.type().changeReturnType(double.class));
+      handle = MethodHandles.filterReturnValue(handle, BOX);
+    } else if(!result.isPrimitive() && result != String.class){
+      // an Integer, a List... checked or converted on the way out
+      handle = MethodHandles.filterReturnValue(handle.asType(handle.type().changeReturnType(Object.class)), TO_LOX);
+    }
+    // void returns nil
+    return handle.asType(MethodType.genericMethodType(type.parameterCount()));
+  }
+}
@@ -0,0 +1,49 @@
+package com.craftinginterpreters.lox;
+
+/**
+ * Instruction set of the bytecode VM.
+ * Operands follow the opcode in the chunk, u8 or u16 (big endian).
+ */
+final class OpCode {
+  private OpCode(){}
+
+  static final byte CONSTANT      = 0;  // u16 constant index
+  static final byte NIL           = 1;
+  static final byte TRUE          = 2;
+  static final byte FALSE         = 3;
+  static final byte POP           = 4;
+
+  static final byte GET_GLOBAL    = 5;  // u16 constant index of the Environment.Global
+  static final byte SET_GLOBAL    = 6;  // u16 constant index of the Environment.Global
+  static final byte DEFINE_GLOBAL = 7;  // u16 constant index of the Environment.Global
+  static final byte GET_LOCAL     = 8;  // u16 slot from the frame base
+  static final byte SET_LOCAL     = 9;  // u16 slot from the frame base
+  static final byte GET_UPVALUE   = 10; // u16 upvalue index of the running function
+  static final byte SET_UPVALUE   = 11; // u16 upvalue index of the running function
+  static final byte CLOSE_UPVALUE = 12; // pops the top local into its upvalue
+
+  static final byte GET_PROPERTY  = 13; // u16 constant index of the Expr.Get
+  static final byte SET_PROPERTY  = 14; // u16 constant index of the Expr.Set
+
+  static final byte EQUAL         = 15;
+  static final byte NOT_EQUAL     = 16;
+  static final byte GREATER       = 17;
+  static final byte GREATER_EQUAL = 18;
+  static final byte LESS          = 19;
+  static final byte LESS_EQUAL    = 20;
+  static final byte ADD           = 21;
+  static final byte SUBTRACT      = 22;
+  static final byte MULTIPLY      = 23;
+  static final byte DIVIDE        = 24;
+  static final byte NOT           = 25;
+  static final byte NEGATE        = 26;
+
+  static final byte PRINT         = 27;
+  static final byte JUMP          = 28; // u16 forward offset
+  static final byte JUMP_IF_FALSE = 29; // u16 forward offset, leaves the condition on the stack
+  static final byte LOOP          = 30; // u16 backward offset
+  static final byte CALL          = 31; // u8 argument count
+  static final byte CLOSURE       = 32; // u16 constant index of the Chunk.Function, captures its upvalues
+  static final byte CLASS         = 33; // u16 constant index of the Stmt.Class, its methods are on the stack
+  static final byte RETURN        = 34;
+}
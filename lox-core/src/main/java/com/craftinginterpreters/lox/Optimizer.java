@@ -0,0 +1,266 @@
+package com.craftinginterpreters.lox;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Rewrites the resolved tree before it runs: folds operators over literals,
+ * drops groupings, keeps only the taken side of if(literal) and removes or
+ * unconditions while(literal). A while with a null condition loops forever.
+ * Nodes that don't change are returned as they are, rebuilt ones keep the
+ * depth, slot and numeric marks of the Resolver.
+ */
+class Optimizer implements Expr.Visitor<Expr>, Stmt.Visitor<Stmt> {
+  // folds by evaluating, so the result is whatever the interpreter would give
+  private final Interpreter folder = new Interpreter();
+
+  List<Stmt> optimize(List<Stmt> statements){
+    List<Stmt> optimized = new ArrayList<>(statements.size());
+    boolean changed = false;
+    for(Stmt stmt : statements){
+      Stmt result = optimize(stmt);
+      if(result != stmt) changed = true;
+      // a pruned statement is gone from its list
+      if(result != null) optimized.add(result);
+    }
+    return changed ? optimized : statements;
+  }
+
+  // null when the statement does nothing
+  private Stmt optimize(Stmt stmt){
+    if(stmt == null) return null;
+    return stmt.accept(this);
+  }
+
+  private Expr optimize(Expr expr){
+    if(expr == null) return null;
+    return expr.accept(this);
+  }
+
+  // a branch can't just vanish, an empty block stands in
+  private Stmt branch(Stmt stmt){
+    Stmt result = optimize(stmt);
+    return result != null ? result : new Stmt.Block(Collections.emptyList());
+  }
+
+  private static Expr.Literal literal(Object value){
+    // literals are plain strings, the cache and the VM constants expect them
+    if(value instanceof LoxString) value = value.toString();
+    Expr.Literal literal = new Expr.Literal(value);
+    literal.numeric = value instanceof Double;
+    return literal;
+  }
+
+  private Expr fold(Expr expr){
+    try {
+      return literal(folder.evaluate(expr));
+    } catch (RunTimeError error) {
+      // 1 / 0 and friends still fail, at run time and on their line
+      return expr;
+    }
+  }
+
+  @Override
+  public Stmt visitBlockStmt(Stmt.Block stmt){
+    List<Stmt> statements = optimize(stmt.statements);
+    if(statements == stmt.statements) return stmt;
+    return new Stmt.Block(statements);
+  }
+
+  @Override
+  public Stmt visitClassStmt(Stmt.Class stmt){
+    List<Stmt.Function> methods = new ArrayList<>(stmt.methods.size());
+    boolean changed = false;
+    for(Stmt.Function method : stmt.methods){
+      Stmt.Function result = (Stmt.Function)optimize(method);
+      if(result != method) changed = true;
+      methods.add(result);
+    }
+    return changed ? new Stmt.Class(stmt.name, methods) : stmt;
+  }
+
+  @Override
+  public Stmt visitBreakStmt(Stmt.Break stmt){
+    return stmt;
+  }
+
+  @Override
+  public Stmt visitExpressionStmt(Stmt.Expression stmt){
+    Expr expression = optimize(stmt.expression);
+    // a literal alone has nothing to do
+    if(expression instanceof Expr.Literal) return null;
+    return expression == stmt.expression ? stmt : new Stmt.Expression(expression);
+  }
+
+  @Override
+  public Stmt visitFunctionStmt(Stmt.Function stmt){
+    Expr.Function function = (Expr.Function)optimize(stmt.function);
+    return function == stmt.function ? stmt : new Stmt.Function(stmt.name, function);
+  }
+
+  @Override
+  public Stmt visitIfStmt(Stmt.If stmt){
+    Expr condition = optimize(stmt.condition);
+    if(condition instanceof Expr.Literal){
+      if(Interpreter.isTruthy(((Expr.Literal)condition).value)){
+        return optimize(stmt.thenBranch);
+      }
+      return optimize(stmt.elseBranch);
+    }
+
+    Stmt thenBranch = branch(stmt.thenBranch);
+    Stmt elseBranch = stmt.elseBranch == null ? null : branch(stmt.elseBranch);
+    if(condition == stmt.condition && thenBranch == stmt.thenBranch && elseBranch == stmt.elseBranch){
+      return stmt;
+    }
+    return new Stmt.If(condition, thenBranch, elseBranch);
+  }
+
+  @Override
+  public Stmt visitPrintStmt(Stmt.Print stmt){
+    Expr expression = optimize(stmt.expression);
+    return expression == stmt.expression ? stmt : new Stmt.Print(expression);
+  }
+
+  @Override
+  public Stmt visitReturnStmt(Stmt.Return stmt){
+    Expr value = optimize(stmt.value);
+    return value == stmt.value ? stmt : new Stmt.Return(stmt.keyword, value);
+  }
+
+  @Override
+  public Stmt visitVarStmt(Stmt.Var stmt){
+    Expr initializer = optimize(stmt.initializer);
+    return initializer == stmt.initializer ? stmt : new Stmt.Var(stmt.name, initializer);
+  }
+
+  @Override
+  public Stmt visitWhileStmt(Stmt.While stmt){
+    Expr condition = optimize(stmt.condition);
+    if(condition instanceof Expr.Literal){
+      if(!Interpreter.isTruthy(((Expr.Literal)condition).value)) return null;
+      // always true, nothing to test on each turn
+      condition = null;
+    }
+    Stmt body = branch(stmt.body);
+    if(condition == stmt.condition && body == stmt.body) return stmt;
+    return new Stmt.While(condition, body);
+  }
+
+  @Override
+  public Expr visitAssignExpr(Expr.Assign expr){
+    Expr value = optimize(expr.value);
+    if(value == expr.value) return expr;
+    Expr.Assign assign = new Expr.Assign(expr.name, value);
+    assign.depth = expr.depth;
+    assign.slot = expr.slot;
+    assign.numeric = expr.numeric;
+    return assign;
+  }
+
+  @Override
+  public Expr visitBinaryExpr(Expr.Binary expr){
+    Expr left = optimize(expr.left);
+    Expr right = optimize(expr.right);
+    Expr.Binary binary = expr;
+    if(left != expr.left || right != expr.right){
+      binary = new Expr.Binary(left, expr.operator, right);
+      // + may have become numeric now that a side is a number literal
+      binary.numeric = expr.operator.type == TokenType.PLUS
+          ? left.numeric && right.numeric
+          : expr.numeric;
+    }
+    if(left instanceof Expr.Literal && right instanceof Expr.Literal) return fold(binary);
+    return binary;
+  }
+
+  @Override
+  public Expr visitFunctionExpr(Expr.Function expr){
+    List<Stmt> body = optimize(expr.body);
+    if(body == expr.body) return expr;
+    Expr.Function function = new Expr.Function(expr.params, body);
+    function.numeric = expr.numeric;
+    function.slots = expr.slots;
+    return function;
+  }
+
+  @Override
+  public Expr visitCallExpr(Expr.Call expr){
+    Expr callee = optimize(expr.callee);
+    List<Expr> arguments = new ArrayList<>(expr.arguments.size());
+    boolean changed = callee != expr.callee;
+    for(Expr argument : expr.arguments){
+      Expr result = optimize(argument);
+      if(result != argument) changed = true;
+      arguments.add(result);
+    }
+    if(!changed) return expr;
+    Expr.Call call = new Expr.Call(callee, expr.paren, arguments);
+    call.numeric = expr.numeric;
+    return call;
+  }
+
+  @Override
+  public Expr visitGetExpr(Expr.Get expr){
+    Expr object = optimize(expr.object);
+    if(object == expr.object) return expr;
+    Expr.Get get = new Expr.Get(object, expr.name);
+    get.numeric = expr.numeric;
+    return get;
+  }
+
+  @Override
+  public Expr visitSetExpr(Expr.Set expr){
+    Expr object = optimize(expr.object);
+    Expr value = optimize(expr.value);
+    if(object == expr.object && value == expr.value) return expr;
+    Expr.Set set = new Expr.Set(object, expr.name, value);
+    set.numeric = expr.numeric;
+    return set;
+  }
+
+  @Override
+  public Expr visitGroupingExpr(Expr.Grouping expr){
+    // parentheses only matter to the parser
+    return optimize(expr.expression);
+  }
+
+  @Override
+  public Expr visitLiteralExpr(Expr.Literal expr){
+    return expr;
+  }
+
+  @Override
+  public Expr visitUnaryExpr(Expr.Unary expr){
+    Expr right = optimize(expr.right);
+    Expr.Unary unary = expr;
+    if(right != expr.right){
+      unary = new Expr.Unary(expr.operator, right);
+      unary.numeric = expr.numeric;
+    }
+    if(right instanceof Expr.Literal) return fold(unary);
+    return unary;
+  }
+
+  @Override
+  public Expr visitVariableExpr(Expr.Variable expr){
+    return expr;
+  }
+
+  @Override
+  public Expr visitLogicalExpr(Expr.Logical expr){
+    Expr left = optimize(expr.left);
+    Expr right = optimize(expr.right);
+    if(left instanceof Expr.Literal){
+      // or keeps a truthy left, and keeps a falsey one, else it is the right
+      boolean truthy = Interpreter.isTruthy(((Expr.Literal)left).value);
+      boolean keepLeft = expr.operator.type == TokenType.OR ? truthy : !truthy;
+      return keepLeft ? left : right;
+    }
+    if(left == expr.left && right == expr.right) return expr;
+    Expr.Logical logical = new Expr.Logical(left, expr.operator, right);
+    logical.numeric = expr.numeric;
+    return logical;
+  }
+}
@@ -0,0 +1,14 @@
+package com.craftinginterpreters.lox;
+
+// where print goes, the interpreter and the VM write lines here instead of
+// System.out so output can be batched or captured
+interface OutputSink {
+  void println(String line);
+
+  void flush();
+
+  // the process wide standard output, flushed on exit
+  static OutputSink stdout(){
+    return ChannelSink.STDOUT;
+  }
+}
@@ -0,0 +1,94 @@
+package com.craftinginterpreters.lox;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+import static com.craftinginterpreters.lox.TokenType.*;
+
+// parses a scanned script in slices on the common fork/join pool. A slice
+// starts where synchronize() would stop at the top level: a class, fun or
+// var right after a ';' or '}' outside of any brace or paren. The slices
+// come back in source order. If any of them has a syntax error the whole
+// script is parsed again on one thread, so errors are reported exactly as
+// without this
+class ParallelParser {
+  // below this a slice is not worth a task
+  private static final int MIN_SLICE = 4096;
+
+  private ParallelParser(){}
+
+  static List<Stmt> parse(TokenBuffer tokens){
+    return parse(tokens, ForkJoinPool.commonPool());
+  }
+
+  static List<Stmt> parse(TokenBuffer tokens, ForkJoinPool pool){
+    List<int[]> slices = slices(tokens, pool.getParallelism());
+    if(slices.size() < 2) return new Parser(tokens).parse();
+
+    List<ForkJoinTask<Parser>> tasks = new ArrayList<>();
+    List<List<Stmt>> parts = new ArrayList<>();
+    for(int[] slice : slices){
+      List<Stmt> part = new ArrayList<>();
+      parts.add(part);
+      tasks.add(pool.submit(() -> {
+        Parser parser = new Parser(tokens, slice[0], slice[1]);
+        part.addAll(parser.parse());
+        return parser;
+      }));
+    }
+
+    List<Stmt> statements = new ArrayList<>();
+    boolean failed = false;
+    for(int i = 0; i < tasks.size(); i++){
+      // join orders the task's writes before our reads
+      if(tasks.get(i).join().failed()) failed = true;
+      statements.addAll(parts.get(i));
+    }
+    if(failed) return new Parser(tokens).parse();
+    return statements;
+  }
+
+  // [from, to) token ranges of about equal size cut at declaration starts
+  private static List<int[]> slices(TokenBuffer tokens, int parallelism){
+    int count = tokens.size();
+    int target = Math.max(MIN_SLICE, count / (parallelism * 4));
+    List<int[]> slices = new ArrayList<>();
+    if(parallelism < 2 || count < 2 * MIN_SLICE){
+      slices.add(new int[]{0, count});
+      return slices;
+    }
+
+    int from = 0;
+    int depth = 0;
+    for(int i = 0; i < count; i++){
+      TokenType type = tokens.type(i);
+      switch(type){
+        case LEFT_BRACE:
+        case LEFT_PAREN:
+          depth++;
+          break;
+        case RIGHT_BRACE:
+        case RIGHT_PAREN:
+          depth--;
+          break;
+        case CLASS:
+        case FUN:
+        case VAR:
+          if(depth == 0 && i - from >= target && endsStatement(tokens.type(i - 1))){
+            slices.add(new int[]{from, i});
+            from = i;
+          }
+          break;
+        default:
+      }
+    }
+    slices.add(new int[]{from, count});
+    return slices;
+  }
+
+  private static boolean endsStatement(TokenType type){
+    return type == SEMICOLON || type == RIGHT_BRACE;
+  }
+}
@@ -10,27 +10,74 @@ import java.util.ArrayList;
 import static com.craftinginterpreters.lox.TokenType.*;
 public class Parser {
   private static class ParseError extends RuntimeException {}
-  private final List<Token> tokens;
+
+  // operator sets as bits of the type ordinals, match(long) tests one
+  // with a shift and an and, nothing allocated per token
+  private static final long EQUALITY_OPERATORS = set(BANG_EQUAL, EQUAL_EQUAL);
+  private static final long COMPARISON_OPERATORS = set(GREATER, LESS, GREATER_EQUAL, LESS_EQUAL);
+  private static final long TERM_OPERATORS = set(PLUS, MINUS);
+  private static final long FACTOR_OPERATORS = set(SLASH, STAR);
+  private static final long UNARY_OPERATORS = set(BANG, MINUS);
+  private static final long LITERALS = set(NUMBER, STRING);
+
+  private static long set(TokenType ...types){
+    long bits = 0;
+    for(TokenType type : types){
+      // a long holds every type, TokenType stays under 64 entries
+      if(type.ordinal() >= Long.SIZE) throw new AssertionError("too many token types");
+      bits |= 1L << type.ordinal();
+    }
+    return bits;
+  }
+  private final TokenBuffer tokens;
   private int loopdepth = 0;
   private int current = 0;
+  // a parser over a slice stops at end, see ParallelParser
+  private final int end;
+  private final boolean deferErrors;
+  private boolean failed = false;
   private boolean allowxpression;
   private boolean foundExpression = false;
-  private Environment environment = new Environment();
 
   Parser(List<Token> tokens){
+    this(TokenBuffer.of(tokens));
+  }
+
+  Parser(TokenBuffer tokens){
     loopdepth = 0;
     this.tokens = tokens;
+    this.end = Integer.MAX_VALUE;
+    this.deferErrors = false;
+  }
+
+  // the declarations in [from, to), errors are not reported but make
+  // failed() true, the caller parses again the normal way to report them
+  Parser(TokenBuffer tokens, int from, int to){
+    loopdepth = 0;
+    this.tokens = tokens;
+    this.current = from;
+    this.end = to;
+    this.deferErrors = true;
+  }
+
+  boolean failed(){
+    return failed;
+  }
+
+  // past the end of a slice everything looks like EOF
+  private TokenType type(int index){
+    return index < end ? tokens.type(index) : EOF;
   }
 
   // SYNCHRONIZE
 
   private void synchronize(){
-    advance();
+    skip();
 
     while(!isAtEnd()){
-      if (previous().type == SEMICOLON) return ;
+      if (type(current - 1) == SEMICOLON) return ;
 
-      switch(peek().type){
+      switch(type(current)){
         case CLASS:
         case FUN:
         case VAR:
@@ -43,7 +90,7 @@ public class Parser {
         default:
       }
 
-      advance();
+      skip();
     }
   }
 
@@ -54,6 +101,16 @@ public class Parser {
   //     return null;
   //   }
   // }
+// pull one top-level declaration at a time, for scripts run as they are
+// read. next() is null after a syntax error, like in parse()
+boolean hasNext(){
+  return !isAtEnd();
+}
+
+Stmt next(){
+  return declaration();
+}
+
 List<Stmt>parse(){
     List<Stmt> statements = new ArrayList<>();
     while(!isAtEnd()){
@@ -68,7 +125,7 @@ private Stmt declaration(){
     if(match(CLASS)) return classDeclaration();
     if(match(VAR)) return varDeclaration();
     if(check(FUN) && checkNext(IDENTIFIER)) {
-      consume(FUN, null);
+      expect(FUN, null);
       return function("function"); // function declaration two type of functions
     }
 
@@ -81,27 +138,30 @@ private Stmt declaration(){
 }
 
 private Stmt statement(){
-  if(match(PRINT)) return printStatement();
-  if(match(LEFT_BRACE)){
-    return new Stmt.Block(block());
-  }
-  if(match(IF)){
-    return ifStatement();
-  }
-
-  if(match(RETURN)){
-    return returnStatement();
-  }
-  if(match(WHILE)){
-    return whileStatement();
-  }
-
-  if(match(FOR)){
-    return forStatement();
-  }
-
-  if(match(BREAK)){
-    return breakStatement();
+  // one look at the type instead of trying each keyword in turn
+  switch(type(current)){
+    case PRINT:
+      skip();
+      return printStatement();
+    case LEFT_BRACE:
+      skip();
+      return new Stmt.Block(block());
+    case IF:
+      skip();
+      return ifStatement();
+    case RETURN:
+      skip();
+      return returnStatement();
+    case WHILE:
+      skip();
+      return whileStatement();
+    case FOR:
+      skip();
+      return forStatement();
+    case BREAK:
+      skip();
+      return breakStatement();
+    default:
   }
 
   // if(match(FUN)){
@@ -113,12 +173,12 @@ private Stmt statement(){
 
 private Stmt classDeclaration(){
   Token name = consume(IDENTIFIER, "Expect class name");
-  consume(LEFT_BRACE, "Expect '{' after class name");
+  expect(LEFT_BRACE, "Expect '{' after class name");
   List<Stmt.Function> body = new ArrayList<Stmt.Function>();
   while(!check(RIGHT_BRACE) && !isAtEnd()){
     body.add(function("method"));
   }
-  consume(RIGHT_BRACE, "Expect '}' after c;ass body.");
+  expect(RIGHT_BRACE, "Expect '}' after c;ass body.");
   return new Stmt.Class(name, body);
 }
 
@@ -128,7 +188,7 @@ private Stmt varDeclaration(){
   if(match(EQUAL)){
     initializer = expression();
   }
-  consume(SEMICOLON, "Expected semicolon after variable declaration");
+  expect(SEMICOLON, "Expected semicolon after variable declaration");
   return new Stmt.Var(name, initializer);
 }
 
@@ -139,7 +199,7 @@ private Stmt.Function function(String kind){
 }
 
 private Expr.Function functionBody(String kind){
-  consume(LEFT_PAREN, "Expect '(' after " + kind + " name");
+  expect(LEFT_PAREN, "Expect '(' after " + kind + " name");
   List<Token> parameters = new ArrayList<>();
   if(!check(TokenType.RIGHT_PAREN)){
     do {
@@ -150,13 +210,20 @@ private Expr.Function functionBody(String kind){
       parameters.add(consume(IDENTIFIER, "Expect parameter name."));
     } while (match(COMMA));
   }
-  consume(RIGHT_PAREN, "Expect ')' after parameters.");
-  consume(LEFT_BRACE, "Expect '{' after before " + kind + " body");
+  expect(RIGHT_PAREN, "Expect ')' after parameters.");
+  expect(LEFT_BRACE, "Expect '{' after before " + kind + " body");
   // Function(Token name, List<Token> params, List<Stmt> body)
 
 
-  List<Stmt> body = block();
-  return new Expr.Function(parameters, body);
+  // a break in the body can't leave a loop around the declaration
+  int enclosingLoops = loopdepth;
+  loopdepth = 0;
+  try {
+    List<Stmt> body = block();
+    return new Expr.Function(parameters, body);
+  } finally {
+    loopdepth = enclosingLoops;
+  }
 }
 
 
@@ -168,7 +235,7 @@ private List<Stmt> block(){
     statements.add(declaration());
   }
 
-  consume(RIGHT_BRACE, "Expected '}' at the end of the block"); // advances
+  expect(RIGHT_BRACE, "Expected '}' at the end of the block"); // advances
   return statements;
 }
 
@@ -176,9 +243,9 @@ private Stmt ifStatement(){
   // stmt.condition
   // stmt.than
   // else
-  consume(LEFT_PAREN, "Expect '(' after 'if'.");
+  expect(LEFT_PAREN, "Expect '(' after 'if'.");
   Expr condition = expression();
-  consume(RIGHT_PAREN, "Expect ')' after if condition.");
+  expect(RIGHT_PAREN, "Expect ')' after if condition.");
   Stmt thanBranch = statement();
   Stmt elseBranch = null;
   if(match(ELSE)){
@@ -189,21 +256,21 @@ private Stmt ifStatement(){
 
 private Stmt printStatement(){
   Expr value = expression();
-  consume(SEMICOLON, "Expect ';' after value");
+  expect(SEMICOLON, "Expect ';' after value");
   return new Stmt.Print(value);
 }
 
 
 private Stmt expressionStatement(){
   Expr expr = expression();
-  consume(SEMICOLON, "Expect ';' after expression");
+  expect(SEMICOLON, "Expect ';' after expression");
   return new Stmt.Expression(expr);
 }
 
 private Stmt whileStatement(){
-  consume(LEFT_PAREN, "Expected '(' after 'while'");
+  expect(LEFT_PAREN, "Expected '(' after 'while'");
   Expr condition = expression();
-  consume(RIGHT_PAREN, "Expected ')' after condition");
+  expect(RIGHT_PAREN, "Expected ')' after condition");
 
   try {
     loopdepth++;
@@ -217,7 +284,7 @@ private Stmt whileStatement(){
 private Stmt forStatement(){
   // for (int i = 0; i < array.length; i++) 
   // for (;;) 
-  consume(LEFT_PAREN, "Expected '(' after 'for'");
+  expect(LEFT_PAREN, "Expected '(' after 'for'");
   Stmt initializer;
   if(match(SEMICOLON)){
     initializer = null;
@@ -231,12 +298,12 @@ private Stmt forStatement(){
   if(!check(SEMICOLON)){
     condition = expression();
   }
-  consume(SEMICOLON, "Expect ';' after loop condition.");
+  expect(SEMICOLON, "Expect ';' after loop condition.");
   Expr increment = null;
   if(!check(RIGHT_PAREN))
     increment = expression();
 
-  consume(RIGHT_PAREN, "Expected ')' after 'condition");
+  expect(RIGHT_PAREN, "Expected ')' after 'condition");
   try {
     loopdepth++;
 
@@ -271,7 +338,7 @@ private Stmt returnStatement(){
     value = expression();
   }
 
-  consume(SEMICOLON, "Expect ';' after return value.");
+  expect(SEMICOLON, "Expect ';' after return value.");
   // value -> return value
   return new Stmt.Return(keyword, value);
 }
@@ -280,7 +347,7 @@ private Stmt breakStatement(){
   if(loopdepth == 0){
     error(previous(), "Must be inside a loop to use 'break'.");
   }
-  consume(SEMICOLON, "Expected ';' after break statement");
+  expect(SEMICOLON, "Expected ';' after break statement");
   return new Stmt.Break();
 }
 
@@ -342,7 +409,7 @@ private Stmt breakStatement(){
 
   Expr equality(){
     Expr expr = comparison();
-    while (match(BANG_EQUAL, EQUAL_EQUAL)) {
+    while (match(EQUALITY_OPERATORS)) {
     Token operator = previous(); // because it is incremented in match
     Expr right = comparison();
     expr = new Expr.Binary(expr, operator, right);
@@ -352,7 +419,7 @@ private Stmt breakStatement(){
 
   Expr comparison(){
     Expr expr = term();
-    while(match(GREATER, LESS, GREATER_EQUAL, LESS_EQUAL)){
+    while(match(COMPARISON_OPERATORS)){
       Token operator = previous(); // because it is incremented in match
       Expr right = term();
       expr = new Expr.Binary(expr, operator, right);
@@ -362,7 +429,7 @@ private Stmt breakStatement(){
 
   Expr term(){
     Expr expr = factor();
-    while(match(PLUS, MINUS)){
+    while(match(TERM_OPERATORS)){
       Token operator = previous(); // because it is incremented in match;
       Expr right = factor();
       expr = new Expr.Binary(expr, operator, right);
@@ -373,7 +440,7 @@ private Stmt breakStatement(){
   Expr factor(){
     Expr expr = unary();
 
-    while(match(SLASH, STAR)){
+    while(match(FACTOR_OPERATORS)){
       Token operator = previous(); // because it is incremented in match
       Expr right = unary();
       expr = new Expr.Binary(expr, operator, right);
@@ -382,7 +449,7 @@ private Stmt breakStatement(){
   }
 
   Expr unary(){
-    if(match(BANG, MINUS)){
+    if(match(UNARY_OPERATORS)){
       Token operator = previous();
       Expr right = unary();
       return new Expr.Unary(operator, right);
@@ -436,13 +503,13 @@ private Stmt breakStatement(){
     if(match(FALSE)) return new Expr.Literal(false);
     if(match(TRUE)) return new Expr.Literal(true);
 
-    if(match(NUMBER, STRING)){
-      return new Expr.Literal(previous().Literal);
+    if(match(LITERALS)){
+      return new Expr.Literal(tokens.literal(current - 1));
     }
 
     if(match(LEFT_PAREN)){
       Expr expr = expression();
-      consume(RIGHT_PAREN, "Expected ')' after expression");
+      expect(RIGHT_PAREN, "Expected ')' after expression");
       return new Expr.Grouping(expr);
     }
 
@@ -462,41 +529,66 @@ private Stmt breakStatement(){
     throw error(peek(), message);
   }
 
-  private boolean match(TokenType ...types){
-    boolean exist = Arrays.asList(types).contains(peek().type);
-    if(exist) advance();
-    return exist == true;
+  // consume when the token itself is not kept
+  private void expect(TokenType type, String message){
+    if(check(type)){
+      skip();
+      return;
+    }
+    throw error(peek(), message);
   }
 
+  private boolean match(TokenType type){
+    boolean exist = type(current) == type;
+    if(exist) skip();
+    return exist;
+  }
+
+  private boolean match(long types){
+    boolean exist = (types & (1L << type(current).ordinal())) != 0;
+    if(exist) skip();
+    return exist;
+  }
+
+  // builds the Token, only for errors
   private Token peek(){
-    return tokens.get(current);
+    return tokens.token(current);
   }
 
   private boolean check(TokenType type){
-    return peek().type == type;
+    return type(current) == type;
   }
 
   // current token after increùenting the current
   private Token previous(){
-    return tokens.get(current - 1);
+    return tokens.token(current - 1);
   }
 
-  private Token advance(){
+  // punctuation is skipped without ever becoming a Token
+  private void skip(){
     if(!isAtEnd()) current++;
+  }
+
+  private Token advance(){
+    skip();
     return previous();
   }
 
   private boolean checkNext(TokenType tokenType){
     if(isAtEnd()) return false;
-    if(tokens.get(current + 1).type == EOF) return false;
-    return tokens.get(current + 1).type == tokenType;
+    if(type(current + 1) == EOF) return false;
+    return type(current + 1) == tokenType;
   }
   private boolean isAtEnd(){
-    return peek().type == EOF;
+    return type(current) == EOF;
   } 
 
   private ParseError error(Token token, String message){
-    Lox.error(token, message);
+    if(deferErrors){
+      failed = true;
+    } else {
+      Lox.error(token, message);
+    }
     return new ParseError();
   }
 }
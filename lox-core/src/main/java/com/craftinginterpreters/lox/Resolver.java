@@ -9,7 +9,6 @@ import java.util.Stack;
  * Resolver
  */
 public class Resolver implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
-  private final Interpreter interpreter;
   private final Stack<Map<String, Variable>> scopes = new Stack<>();
   private FunctionType currentFunction = FunctionType.NONE;
 
@@ -18,9 +17,11 @@ public class Resolver implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
 
   private static class Variable {
     final Token name;
+    final int slot; // index in the environment frame at runtime
     VariableState state;
-    private Variable(Token name, VariableState state){
+    private Variable(Token name, int slot, VariableState state){
       this.name = name;
+      this.slot = slot;
       this.state = state;
     }
   }
@@ -29,8 +30,7 @@ public class Resolver implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
     DECLARED, DEFINED, READ
   }
 
-  Resolver(Interpreter interpreter){
-    this.interpreter = interpreter;
+  Resolver(){
   }
   private enum FunctionType {
     NONE,
@@ -82,6 +82,8 @@ public class Resolver implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
         define(token);
       }
       resolve(stmt.function.body);
+      //? size of the frame, params first then the locals of the body
+      stmt.function.slots = scopes.peek().size();
     endScope();
     this.currentFunction = enclosingFunction;
   }
@@ -96,14 +98,15 @@ public class Resolver implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
     if(scope.containsKey(name.lexeme)){
       Lox.error(name, "Already a variable with this name in this scope.");
     }
-    scope.put(name.lexeme, new Variable(name, VariableState.DECLARED));
+    //? slots are given in declaration order, the interpreter defines in the same order
+    scope.put(name.lexeme, new Variable(name, scope.size(), VariableState.DECLARED));
   }
 
   private void define(Token name){
     //? after declaring the variable, we resolove its initializer expression
     //? it is done 
     if(scopes.empty()) return;
-    scopes.peek().put(name.lexeme, new Variable(name, VariableState.DEFINED));
+    scopes.peek().get(name.lexeme).state = VariableState.DEFINED;
   }
 
   private void resolveLocal(Expr expr, Token name, boolean isRead){
@@ -117,10 +120,19 @@ public class Resolver implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
         //? si 'i' is 15 too 
         //? 15 - 15 = 0
         //? if it si qt the enclosing scope it will be 1 then 2 then 3 etc...
-        interpreter.resolve(expr, scopes.size() - 1 - i); //? we will push to the interperter locals
+        Variable variable = scopes.get(i).get(name.lexeme);
+        int depth = scopes.size() - 1 - i;
+        //? we write it on the node itself, depth stays -1 for globals
+        if(expr instanceof Expr.Variable){
+          ((Expr.Variable)expr).depth = depth;
+          ((Expr.Variable)expr).slot = variable.slot;
+        } else if(expr instanceof Expr.Assign){
+          ((Expr.Assign)expr).depth = depth;
+          ((Expr.Assign)expr).slot = variable.slot;
+        }
 
         if(isRead){
-          scopes.get(i).get(name.lexeme).state = VariableState.READ;
+          variable.state = VariableState.READ;
         }
         return;
       }
@@ -220,6 +232,19 @@ public class Resolver implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
   public Void visitBinaryExpr(Expr.Binary expr){
     resolve(expr.left);
     resolve(expr.right);
+    //? - * / give a number or fail, + only when both sides are numbers
+    switch(expr.operator.type){
+      case MINUS:
+      case STAR:
+      case SLASH:
+        expr.numeric = true;
+        break;
+      case PLUS:
+        expr.numeric = expr.left.numeric && expr.right.numeric;
+        break;
+      default:
+        break;
+    }
     return null;
   }
 
@@ -241,13 +266,14 @@ public class Resolver implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
   @Override
   public Void visitGroupingExpr(Expr.Grouping expr){
     resolve(expr.expression);
+    expr.numeric = expr.expression.numeric;
     return null;
   }
 
   @Override
   public Void visitLiteralExpr(Expr.Literal expr){
-    //? il fait rien
     //? il n'a pas de sous expr
+    expr.numeric = expr.value instanceof Double;
     return null;
   }
 
@@ -268,6 +294,7 @@ public class Resolver implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
   @Override
   public Void visitUnaryExpr(Expr.Unary expr){
     resolve(expr.right);
+    expr.numeric = expr.operator.type == TokenType.MINUS;
     return null;
   }
 
@@ -295,11 +322,19 @@ public class Resolver implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
 
   @Override 
   public Void visitFunctionExpr(Expr.Function expr){
-    for(Token token: expr.params){
+    //? same as a declared function, params and body get their own frame
+    FunctionType enclosingFunction = currentFunction;
+    this.currentFunction = FunctionType.FUNCTION;
+
+    beginScope();
+      for(Token token: expr.params){
         declare(token);
         define(token);
       }
-    resolve(expr.body);
+      resolve(expr.body);
+      expr.slots = scopes.peek().size();
+    endScope();
+    this.currentFunction = enclosingFunction;
     return null;
   }
 }
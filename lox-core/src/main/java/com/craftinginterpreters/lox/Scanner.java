@@ -0,0 +1,387 @@
+package com.craftinginterpreters.lox;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.util.Arrays;
+import java.util.List;
+
+import static com.craftinginterpreters.lox.TokenType.*;
+
+
+
+public class Scanner {
+  // what a char can start or continue, one lookup instead of range tests
+  private static final byte ALPHA = 1;
+  private static final byte DIGIT = 2;
+  private static final byte SPACE = 4;
+  private static final byte[] CHAR_CLASS = new byte[128];
+  private static final int READ_SIZE = 8192;
+
+  // the characters [base, limit) of the source, all of it for a String,
+  // a window from the current token on when reading from a Reader
+  private char[] buffer;
+  private int base = 0;
+  private int limit;
+  private final Reader reader;
+  private final TokenBuffer tokens;
+  private boolean done = false;
+  private int start = 0;
+  private int current = 0;
+  private int line = 1;
+
+
+  static {
+    for(char c = 'a'; c <= 'z'; c++) CHAR_CLASS[c] = ALPHA;
+    for(char c = 'A'; c <= 'Z'; c++) CHAR_CLASS[c] = ALPHA;
+    CHAR_CLASS['_'] = ALPHA;
+    for(char c = '0'; c <= '9'; c++) CHAR_CLASS[c] = DIGIT;
+    CHAR_CLASS[' '] = SPACE;
+    CHAR_CLASS['\t'] = SPACE;
+    CHAR_CLASS['\r'] = SPACE;
+    CHAR_CLASS['\n'] = SPACE;
+  }
+
+  Scanner(String source){
+    this.buffer = source.toCharArray();
+    this.limit = buffer.length;
+    this.reader = null;
+    this.tokens = new TokenBuffer(source);
+  }
+
+  // pull mode: the parser asks for tokens through tokens() and the source
+  // is read as they are needed, only a few tokens are held at a time
+  Scanner(Reader reader){
+    this.buffer = new char[READ_SIZE];
+    this.limit = 0;
+    this.reader = reader;
+    this.tokens = new TokenBuffer(this);
+  }
+
+  TokenBuffer tokens(){
+    return tokens;
+  }
+
+  private void scanToken(){
+    // skipWhiteSpaces();
+    char c = advance();
+    switch(c){
+      // skip spaces tab
+      case ' ':
+      case '\r':
+      case '\t':
+        break;
+      case '\n': line++; break;
+      case '"': string(); break;
+      case '(': addToken(LEFT_PAREN); break;
+      case ')': addToken(RIGHT_PAREN); break;
+      case '{': addToken(LEFT_BRACE); break;
+      case '}': addToken(RIGHT_BRACE); break;
+      case ',': addToken(COMMA); break;
+      case '.': addToken(DOT); break;
+      case '+': addToken(PLUS); break;
+      case '-': addToken(MINUS); break;
+      case ';': addToken(SEMICOLON); break;
+      case '*': addToken(STAR); break;
+      case '!': addToken(match('=') ? BANG_EQUAL : EQUAL); break;
+      case '=': addToken(match('=') ? EQUAL_EQUAL : EQUAL); break;
+      case '<': addToken(match('=') ? LESS_EQUAL : LESS); break;
+      case '>': addToken(match('=') ? GREATER_EQUAL : GREATER); break;
+      case '/': 
+      if(match('/'))
+        // A comment goes until the end of the line
+        // start follows so a streaming window doesn't keep the comment
+        while(peek() != '\n' && !isAtEnd()){
+          advance();
+          start = current;
+        }
+      else if (match('*'))
+        multilineComment();
+      else
+        addToken(SLASH);
+      break;
+      default:
+      if(isAlpha(c))
+        identifier();
+      else if(isDigit(c))
+        number();
+      else
+        Lox.error(line, " Uexpected character -> " + c);
+      break;
+    }
+  }
+  List<Token> scanTokens(){
+    return scan().toList();
+  }
+
+  // tokens stay offsets into the source, see TokenBuffer
+  TokenBuffer scan(){
+    if(reader != null) throw new IllegalStateException("a streaming scanner is read through tokens()");
+    while(scanNext());
+    return tokens;
+  }
+
+  // scans until one more token is in the buffer, false once EOF is there
+  boolean scanNext(){
+    if(done) return false;
+    int count = tokens.size();
+    while(tokens.size() == count){
+      // a chaque fois on affect le current dans le start
+      // comme ca il n'est plus derriere
+      start = current;
+      skipWhiteSpaces();
+      if(isAtEnd()){
+        tokens.add(EOF, current, 0, line, "");
+        done = true;
+        break;
+      }
+      scanToken();
+    }
+    return true;
+  }
+
+  private boolean isAtEnd(){
+    return current >= limit && !fill();
+  }
+
+  // reads more of the source behind limit, the window drops what is before
+  // start since the tokens already scanned don't point into it
+  private boolean fill(){
+    if(reader == null) return false;
+    int keep = start - base;
+    if(keep > 0){
+      System.arraycopy(buffer, keep, buffer, 0, limit - start);
+      base = start;
+    }
+    if(limit - base == buffer.length){
+      // one token longer than the window, a long string
+      buffer = Arrays.copyOf(buffer, buffer.length * 2);
+    }
+    try {
+      int read = reader.read(buffer, limit - base, buffer.length - (limit - base));
+      if(read <= 0) return false;
+      limit += read;
+      return true;
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  private char charAt(int position){
+    return buffer[position - base];
+  }
+
+  private String text(int from, int to){
+    return new String(buffer, from - base, to - from);
+  }
+
+  private void addToken(TokenType type){
+    if(reader == null){
+      tokens.add(type, start, current - start, line);
+    } else {
+      // the window moves on, the lexeme has to be kept now
+      tokens.add(type, start, current - start, line, lexeme(type));
+    }
+  }
+
+  // the fixed spelling of keywords and operators is shared
+  private String lexeme(TokenType type){
+    String fixed = TokenBuffer.fixedText(type);
+    if(fixed != null && fixed.length() == current - start){
+      boolean same = true;
+      for(int i = 0; i < fixed.length(); i++){
+        if(fixed.charAt(i) != charAt(start + i)) same = false;
+      }
+      if(same) return fixed;
+    }
+    return text(start, current);
+  }
+
+  private char advance(){
+    if(!isAtEnd()){
+      return charAt(current++); // post increment
+    }
+    return '\0';
+  }
+  private boolean match(char expected){
+    if(isAtEnd()) return false;
+    if(charAt(current) != expected)
+      return false;
+    // it advances only if it matches
+    current++;
+    return true;
+  }
+
+  private char peek(){
+    // this is called lockHead
+    // it consumes but doesn't advance
+    if(isAtEnd()) return '\0';
+    return charAt(current);
+  }
+
+  private char nextPeek(){
+    // this is called lockHead
+    // it consumes but doesn't advance
+    while(current + 1 >= limit){
+      if(!fill()) return '\0';
+    }
+    return charAt(current + 1);
+  }
+
+  private void string(){
+    // if not null
+    while(peek() != '"' && !isAtEnd()){
+      if(peek() == '\n') line++;
+      advance();
+    }
+
+    if(isAtEnd()) {
+      Lox.error(line, "Unterminated String");
+      return;
+    }
+
+    advance(); // close the "
+    // the value is cut out of the source when the parser needs it
+    addToken(STRING);
+  }
+
+  private void number(){
+    while(isDigit(peek()))
+      advance();
+    if(peek() == '.' && isDigit(nextPeek())){
+      advance();
+      while(isDigit(peek()))
+        advance();
+    }
+
+    // advance();
+    if(reader == null){
+      tokens.addNumber(start, current - start, line, numberValue());
+    } else {
+      tokens.addNumber(start, current - start, line, numberValue(), text(start, current));
+    }
+  }
+
+  // plain integers are summed up in place, exact up to 2^53, the rest
+  // goes through parseDouble for correct rounding
+  private double numberValue(){
+    int length = current - start;
+    if(length <= 15){
+      long value = 0;
+      for(int i = start; i < current; i++){
+        char c = charAt(i);
+        if(c == '.') return Double.parseDouble(text(start, current));
+        value = value * 10 + (c - '0');
+      }
+      return value;
+    }
+    return Double.parseDouble(text(start, current));
+  }
+
+  private static boolean is(char c, byte charClass){
+    return c < 128 && (CHAR_CLASS[c] & charClass) != 0;
+  }
+
+  private boolean isDigit(char c){
+    return is(c, DIGIT);
+  }
+
+  private boolean isAlpha(char c){
+    return is(c, ALPHA);
+  }
+  private boolean isAlphaNumeric(char c){
+    return is(c, (byte)(ALPHA | DIGIT));
+  }
+
+  private void identifier(){
+    // straight on the buffer, a refill only at its end
+    for(;;){
+      while(current < limit && isAlphaNumeric(buffer[current - base]))
+        current++;
+      if(current < limit || !fill()) break;
+    }
+    addToken(keyword());
+  }
+
+  // a trie over the scanned chars in switches, like clox, no lexeme needed
+  private TokenType keyword(){
+    switch(charAt(start)){
+      case 'a': return rest(1, "nd", AND);
+      case 'b': return rest(1, "reak", BREAK);
+      case 'c': return rest(1, "lass", CLASS);
+      case 'e': return rest(1, "lse", ELSE);
+      case 'f':
+        if(current - start > 1){
+          switch(charAt(start + 1)){
+            case 'a': return rest(2, "lse", FALSE);
+            case 'o': return rest(2, "r", FOR);
+            case 'u': return rest(2, "n", FUN);
+          }
+        }
+        break;
+      case 'i': return rest(1, "f", IF);
+      case 'n': return rest(1, "il", NIL);
+      case 'o': return rest(1, "r", OR);
+      case 'p': return rest(1, "rint", PRINT);
+      case 'r': return rest(1, "eturn", RETURN);
+      case 's': return rest(1, "uper", SUPER);
+      case 't':
+        if(current - start > 1){
+          switch(charAt(start + 1)){
+            case 'h': return rest(2, "is", THIS);
+            case 'r': return rest(2, "ue", TRUE);
+          }
+        }
+        break;
+      case 'v': return rest(1, "ar", VAR);
+      case 'w': return rest(1, "hile", WHILE);
+    }
+    return IDENTIFIER;
+  }
+
+  private TokenType rest(int from, String rest, TokenType type){
+    if(current - start != from + rest.length()) return IDENTIFIER;
+    for(int i = 0; i < rest.length(); i++){
+      if(charAt(start + from + i) != rest.charAt(i)) return IDENTIFIER;
+    }
+    return type;
+  }
+
+  private void multilineComment(){
+    int commentCount = 1;
+    // while(true && !isAtEnd()){
+      while(commentCount > 0 && !isAtEnd()){
+      char c = peek();
+      if(c == '\n') line++;
+      if(c == '/' && nextPeek() == '*')
+        commentCount++;
+      if(c == '*' && nextPeek() == '/')
+        commentCount--;
+      advance();
+      start = current;
+    }
+    // advance();
+    advance(); // advance to finish the comment */
+  }
+
+  private void skipWhiteSpaces(){
+    // a run of spaces in one loop over the buffer, not a scanToken each
+    for(;;){
+      while(current < limit){
+        char c = buffer[current - base];
+        if(!isSpace(c)){
+          start = current;
+          return;
+        }
+        if(c == '\n') line++;
+        current++;
+      }
+      if(!fill()) break;
+    }
+    start = current;
+  }
+
+  private boolean isSpace(char c){
+    return is(c, SPACE);
+  }
+}
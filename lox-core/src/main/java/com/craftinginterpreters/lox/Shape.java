@@ -0,0 +1,43 @@
+package com.craftinginterpreters.lox;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Hidden class of a LoxInstance: which field lives at which index.
+ * Adding a field moves the instance to the next shape, the transitions
+ * are shared so instances filled in the same order share their shapes.
+ * Each class declaration has its own root (Stmt.Class.shape), kept by every
+ * LoxClass made from it in any runtime, so the shapes and the caches keyed
+ * by them do not depend on which runtime runs the tree. A shape tells the
+ * declaration, and so where each method is, see LoxClass.methodSlot.
+ */
+final class Shape {
+  private final Map<String, Integer> indexes;
+  // runtimes on other threads add fields to the same shapes
+  private final Map<String, Shape> transitions = new ConcurrentHashMap<>();
+  final int size;
+
+  Shape(){
+    this.indexes = new HashMap<>();
+    this.size = 0;
+  }
+
+  private Shape(Shape parent, String name){
+    this.indexes = new HashMap<>(parent.indexes);
+    this.indexes.put(name, parent.size);
+    this.size = parent.size + 1;
+  }
+
+  int indexOf(String name){
+    Integer index = indexes.get(name);
+    return index == null ? -1 : index;
+  }
+
+  Shape withField(String name){
+    Shape next = transitions.get(name);
+    if(next != null) return next;
+    return transitions.computeIfAbsent(name, key -> new Shape(this, key));
+  }
+}
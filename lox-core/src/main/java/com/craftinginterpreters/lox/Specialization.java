@@ -0,0 +1,15 @@
+package com.craftinginterpreters.lox;
+
+/**
+ * What a Binary or Unary node has seen so far.
+ * A node starts UNINITIALIZED, becomes NUMBER, STRING or BOOLEAN
+ * on its first evaluation and falls back to GENERIC for good
+ * the first time it sees something else.
+ */
+enum Specialization {
+  UNINITIALIZED,
+  NUMBER,
+  STRING,
+  BOOLEAN,
+  GENERIC
+}
@@ -41,6 +41,7 @@ abstract class Stmt{
 
     final Token name;
     final List<Stmt.Function> methods;
+    Shape shape = new Shape();
   }
 
   static class Break extends Stmt {
@@ -0,0 +1,183 @@
+package com.craftinginterpreters.lox;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+// the scanner output as parallel arrays, a token is an index: its type,
+// where it starts in the source, its length and its line. Token objects,
+// lexemes and literal values are only built when the parser asks for them.
+//
+// A buffer over a streaming Scanner is a small ring instead: tokens are
+// scanned when the parser reaches them and old ones are overwritten, the
+// parser never looks more than one token back or ahead.
+class TokenBuffer {
+  private static final TokenType[] TYPES = TokenType.values();
+  private static final int INITIAL_CAPACITY = 256;
+  private static final int RING_SIZE = 64;
+  private static final Map<TokenType, String> FIXED_TEXT = new EnumMap<>(TokenType.class);
+
+  static {
+    String[] punctuation = {
+      "(", ")", "{", "}", ",", ".", "-", "+", ";", "/", "*",
+      "!", "!=", "=", "==", ">", ">=", "<", "<="
+    };
+    for(int i = 0; i < punctuation.length; i++){
+      FIXED_TEXT.put(TYPES[TokenType.LEFT_PAREN.ordinal() + i], punctuation[i]);
+    }
+    for(int i = TokenType.AND.ordinal(); i <= TokenType.BREAK.ordinal(); i++){
+      FIXED_TEXT.put(TYPES[i], TYPES[i].name().toLowerCase());
+    }
+  }
+
+  private final String source;
+  private final Scanner scanner;
+  private final int mask;
+  private byte[] types;
+  private int[] starts;
+  private int[] lengths;
+  private int[] lines;
+  private double[] numbers;
+  // lexemes, only when streaming since the source is not kept
+  private String[] texts;
+  // tokens built so far, or all of them when the buffer wraps a list.
+  // two threads may build the same token, either copy will do
+  private Token[] built;
+  private int size = 0;
+
+  TokenBuffer(String source){
+    this.source = source;
+    this.scanner = null;
+    this.mask = -1;
+    allocate(Math.max(INITIAL_CAPACITY, source.length() / 8));
+  }
+
+  TokenBuffer(Scanner scanner){
+    this.source = null;
+    this.scanner = scanner;
+    this.mask = RING_SIZE - 1;
+    allocate(RING_SIZE);
+    texts = new String[RING_SIZE];
+  }
+
+  // for tokens that were scanned the old way (tests, benchmarks)
+  static TokenBuffer of(List<Token> tokens){
+    TokenBuffer buffer = new TokenBuffer("");
+    for(Token token : tokens){
+      buffer.add(token.type, 0, 0, token.line);
+    }
+    buffer.built = tokens.toArray(new Token[0]);
+    return buffer;
+  }
+
+  // the lexeme every token of this type has, null for names and literals
+  static String fixedText(TokenType type){
+    return FIXED_TEXT.get(type);
+  }
+
+  private void allocate(int capacity){
+    types = new byte[capacity];
+    starts = new int[capacity];
+    lengths = new int[capacity];
+    lines = new int[capacity];
+    numbers = new double[capacity];
+    // up front, slices of one buffer are parsed on several threads
+    built = new Token[capacity];
+  }
+
+  void add(TokenType type, int start, int length, int line){
+    if(scanner == null && size == types.length) grow();
+    int slot = size & mask;
+    types[slot] = (byte)type.ordinal();
+    starts[slot] = start;
+    lengths[slot] = length;
+    lines[slot] = line;
+    built[slot] = null;
+    size++;
+  }
+
+  void add(TokenType type, int start, int length, int line, String text){
+    add(type, start, length, line);
+    if(texts != null) texts[(size - 1) & mask] = text;
+  }
+
+  void addNumber(int start, int length, int line, double value){
+    add(TokenType.NUMBER, start, length, line);
+    numbers[(size - 1) & mask] = value;
+  }
+
+  void addNumber(int start, int length, int line, double value, String text){
+    addNumber(start, length, line, value);
+    if(texts != null) texts[(size - 1) & mask] = text;
+  }
+
+  // tokens added so far
+  int size(){
+    return size;
+  }
+
+  // a streaming buffer scans up to index first
+  private int slot(int index){
+    while(index >= size && scanner != null && scanner.scanNext());
+    return index & mask;
+  }
+
+  TokenType type(int index){
+    return TYPES[types[slot(index)]];
+  }
+
+  int line(int index){
+    return lines[slot(index)];
+  }
+
+  String lexeme(int index){
+    int slot = slot(index);
+    if(built[slot] != null) return built[slot].lexeme;
+    if(texts != null) return texts[slot];
+    return source.substring(starts[slot], starts[slot] + lengths[slot]);
+  }
+
+  Object literal(int index){
+    int slot = slot(index);
+    if(built[slot] != null) return built[slot].Literal;
+    switch(TYPES[types[slot]]){
+      case NUMBER: return Interpreter.box(numbers[slot]);
+      case STRING: {
+        // without the quotes
+        if(texts != null) return texts[slot].substring(1, texts[slot].length() - 1);
+        return source.substring(starts[slot] + 1, starts[slot] + lengths[slot] - 1);
+      }
+      default: return null;
+    }
+  }
+
+  Token token(int index){
+    int slot = slot(index);
+    Token token = built[slot];
+    if(token == null){
+      token = new Token(type(index), lexeme(index), literal(index), lines[slot]);
+      built[slot] = token;
+    }
+    return token;
+  }
+
+  List<Token> toList(){
+    List<Token> tokens = new ArrayList<>(size);
+    for(int i = 0; i < size; i++){
+      tokens.add(token(i));
+    }
+    return tokens;
+  }
+
+  private void grow(){
+    int capacity = types.length * 2;
+    types = Arrays.copyOf(types, capacity);
+    starts = Arrays.copyOf(starts, capacity);
+    lengths = Arrays.copyOf(lengths, capacity);
+    lines = Arrays.copyOf(lines, capacity);
+    numbers = Arrays.copyOf(numbers, capacity);
+    built = Arrays.copyOf(built, capacity);
+  }
+}
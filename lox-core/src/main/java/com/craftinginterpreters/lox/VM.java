@@ -0,0 +1,455 @@
+package com.craftinginterpreters.lox;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Stack based virtual machine running the chunks made by the Compiler.
+ * Calls to compiled functions push a frame instead of recursing in Java.
+ * The arguments and locals of a call are stack slots from its frame base,
+ * a local an inner function captured is reached through an Upvalue.
+ *
+ * Only behind --vm, the tree-walker stays the default: on HotSpot this
+ * loop runs about as fast as it. The whole script runs in one call of
+ * run(), so the JIT only ever compiles it on stack replacement, and every
+ * value on the stack is boxed.
+ */
+public class VM {
+  // reused by the calls made at the same depth, a call allocates nothing
+  private static class CallFrame {
+    Chunk chunk;
+    // null for the script
+    VMFunction function;
+    int ip;
+    // slot 0 of the frame, the callee is just below
+    int base;
+  }
+
+  // a captured local: on the stack while its scope runs, then moved in here
+  static final class Upvalue {
+    // -1 once closed
+    int slot;
+    Object value;
+    // open upvalues, highest slot first
+    Upvalue next;
+
+    Upvalue(int slot, Upvalue next){
+      this.slot = slot;
+      this.next = next;
+    }
+  }
+
+  final Environment globals = new Environment();
+  private Object[] stack = new Object[256];
+  private int sp = 0;
+  private CallFrame[] frames = new CallFrame[64];
+  private int frameCount = 0;
+  private Upvalue openUpvalues = null;
+  private OutputSink out = OutputSink.stdout();
+
+  VM(){
+    Interpreter.defineNatives(globals);
+  }
+
+  void setOutput(OutputSink out){
+    this.out = out;
+  }
+
+  void interpret(Chunk chunk){
+    int start = sp;
+    globals.use(chunk.globals);
+    try {
+      // the slot a callee would have
+      push(null);
+      pushFrame(chunk, null, sp);
+      run(frameCount - 1);
+    } catch (RunTimeError error) {
+      // functions kept in globals must not see the stack being reused
+      closeUpvalues(start);
+      sp = start;
+      frameCount = 0;
+      Lox.runtimeError(error);
+    }
+  }
+
+  Object call(VMFunction function, List<Object> arguments){
+    push(function);
+    for(Object argument : arguments){
+      push(argument);
+    }
+    pushFrame(function.function.chunk, function, sp - arguments.size());
+    return run(frameCount - 1);
+  }
+
+  private CallFrame pushFrame(Chunk chunk, VMFunction function, int base){
+    if(frameCount == frames.length){
+      frames = Arrays.copyOf(frames, frameCount * 2);
+    }
+    CallFrame frame = frames[frameCount];
+    if(frame == null) frame = frames[frameCount] = new CallFrame();
+    frame.chunk = chunk;
+    frame.function = function;
+    frame.ip = 0;
+    frame.base = base;
+    frameCount++;
+    return frame;
+  }
+
+  // runs until the frame at exitDepth returns
+  private Object run(int exitDepth){
+    CallFrame frame = frames[frameCount - 1];
+    // hot state lives in locals, the frame gets its ip back on calls
+    byte[] code = frame.chunk.code;
+    Object[] constants = frame.chunk.constants;
+    int ip = frame.ip;
+    int base = frame.base;
+
+    for(;;){
+      byte instruction = code[ip++];
+      switch(instruction){
+        case OpCode.CONSTANT:
+          push(constants[readShort(code, ip)]);
+          ip += 2;
+          break;
+        case OpCode.NIL: push(null); break;
+        case OpCode.TRUE: push(true); break;
+        case OpCode.FALSE: push(false); break;
+        case OpCode.POP: sp--; break;
+
+        // the compiler put the index of the name in the constants, no hashing here
+        case OpCode.GET_GLOBAL: {
+          Environment.Global global = (Environment.Global)constants[readShort(code, ip)];
+          ip += 2;
+          Object value = globals.read(global);
+          if(Environment.isUndefined(value)) throw undefined(frame, ip, global);
+          push(value);
+          break;
+        }
+        case OpCode.SET_GLOBAL: {
+          Environment.Global global = (Environment.Global)constants[readShort(code, ip)];
+          ip += 2;
+          if(Environment.isUndefined(globals.read(global))) throw undefined(frame, ip, global);
+          globals.define(global, peek(0));
+          break;
+        }
+        case OpCode.DEFINE_GLOBAL: {
+          Environment.Global global = (Environment.Global)constants[readShort(code, ip)];
+          ip += 2;
+          globals.define(global, pop());
+          break;
+        }
+        case OpCode.GET_LOCAL:
+          push(stack[base + readShort(code, ip)]);
+          ip += 2;
+          break;
+        case OpCode.SET_LOCAL:
+          stack[base + readShort(code, ip)] = stack[sp - 1];
+          ip += 2;
+          break;
+        case OpCode.GET_UPVALUE: {
+          Upvalue upvalue = frame.function.upvalues[readShort(code, ip)];
+          ip += 2;
+          push(upvalue.slot >= 0 ? stack[upvalue.slot] : upvalue.value);
+          break;
+        }
+        case OpCode.SET_UPVALUE: {
+          Upvalue upvalue = frame.function.upvalues[readShort(code, ip)];
+          ip += 2;
+          if(upvalue.slot >= 0){
+            stack[upvalue.slot] = stack[sp - 1];
+          } else {
+            upvalue.value = stack[sp - 1];
+          }
+          break;
+        }
+        case OpCode.CLOSE_UPVALUE:
+          closeUpvalues(sp - 1);
+          sp--;
+          break;
+
+        case OpCode.GET_PROPERTY: {
+          Expr.Get get = (Expr.Get)constants[readShort(code, ip)];
+          ip += 2;
+          Object object = pop();
+          if(!(object instanceof LoxInstance)){
+            throw error(frame, ip, "Only instances have porperties");
+          }
+          push(get.cache.get((LoxInstance)object, get.name));
+          break;
+        }
+        case OpCode.SET_PROPERTY: {
+          Expr.Set set = (Expr.Set)constants[readShort(code, ip)];
+          ip += 2;
+          Object value = pop();
+          Object object = pop();
+          if(!(object instanceof LoxInstance)){
+            throw error(frame, ip, "Only instances have fields");
+          }
+          set.cache.set((LoxInstance)object, set.name, value);
+          push(value);
+          break;
+        }
+
+        case OpCode.EQUAL: {
+          Object right = pop();
+          Object left = pop();
+          push(Interpreter.isEqual(left, right));
+          break;
+        }
+        case OpCode.NOT_EQUAL: {
+          Object right = pop();
+          Object left = pop();
+          push(!Interpreter.isEqual(left, right));
+          break;
+        }
+        case OpCode.GREATER: {
+          checkNumberOperands(frame, ip);
+          double right = (double)pop();
+          double left = (double)pop();
+          push(left > right);
+          break;
+        }
+        case OpCode.GREATER_EQUAL: {
+          checkNumberOperands(frame, ip);
+          double right = (double)pop();
+          double left = (double)pop();
+          push(left >= right);
+          break;
+        }
+        case OpCode.LESS: {
+          checkNumberOperands(frame, ip);
+          double right = (double)pop();
+          double left = (double)pop();
+          push(left < right);
+          break;
+        }
+        case OpCode.LESS_EQUAL: {
+          checkNumberOperands(frame, ip);
+          double right = (double)pop();
+          double left = (double)pop();
+          push(left <= right);
+          break;
+        }
+        case OpCode.ADD: {
+          Object right = pop();
+          Object left = pop();
+          if(left instanceof Double && right instanceof Double){
+            push(Interpreter.box((double)left + (double)right));
+          } else if(LoxString.isString(left) && LoxString.isString(right)){
+            push(LoxString.concat(left, right));
+          } else if(LoxString.isString(left) && right instanceof Double){
+            push(LoxString.concat(left, Interpreter.doubleToStr((double)right)));
+          } else if(left instanceof Double && LoxString.isString(right)){
+            push(LoxString.concat(Interpreter.doubleToStr((double)left), right));
+          } else {
+            throw error(frame, ip, "Operand must be two numbers or two strings");
+          }
+          break;
+        }
+        case OpCode.SUBTRACT: {
+          checkNumberOperands(frame, ip);
+          double right = (double)pop();
+          double left = (double)pop();
+          push(Interpreter.box(left - right));
+          break;
+        }
+        case OpCode.MULTIPLY: {
+          checkNumberOperands(frame, ip);
+          double right = (double)pop();
+          double left = (double)pop();
+          push(Interpreter.box(left * right));
+          break;
+        }
+        case OpCode.DIVIDE: {
+          checkNumberOperands(frame, ip);
+          double right = (double)pop();
+          double left = (double)pop();
+          if(right == 0){
+            throw error(frame, ip, "Division with zero is not permitted");
+          }
+          push(Interpreter.box(left / right));
+          break;
+        }
+        case OpCode.NOT:
+          push(!Interpreter.isTruthy(pop()));
+          break;
+        case OpCode.NEGATE:
+          if(!(peek(0) instanceof Double)){
+            throw error(frame, ip, "Operand must be a number");
+          }
+          push(Interpreter.box(-(double)pop()));
+          break;
+
+        case OpCode.PRINT:
+          out.println(Interpreter.stringify(pop()));
+          break;
+        case OpCode.JUMP:
+          ip += 2 + readShort(code, ip);
+          break;
+        case OpCode.JUMP_IF_FALSE:
+          if(!Interpreter.isTruthy(peek(0))){
+            ip += 2 + readShort(code, ip);
+          } else {
+            ip += 2;
+          }
+          break;
+        case OpCode.LOOP:
+          ip += 2 - readShort(code, ip);
+          break;
+
+        case OpCode.CALL: {
+          int argCount = code[ip++] & 0xff;
+          Object callee = peek(argCount);
+          if(callee instanceof VMFunction){
+            VMFunction function = (VMFunction)callee;
+            checkArity(frame, ip, function, argCount);
+            // the arguments already are the first slots of the callee frame
+            frame.ip = ip;
+            frame = pushFrame(function.function.chunk, function, sp - argCount);
+            code = frame.chunk.code;
+            constants = frame.chunk.constants;
+            ip = 0;
+            base = frame.base;
+          } else if(callee instanceof NativeFunction){
+            NativeFunction function = (NativeFunction)callee;
+            checkArity(frame, ip, function, argCount);
+            // straight from the stack, no argument list
+            Object result;
+            try {
+              result = function.callFixed(stack, sp - argCount);
+            } catch (RuntimeException error) {
+              if(error instanceof RunTimeError) throw error;
+              throw error(frame, ip, NativeFunction.message(error));
+            }
+            sp -= argCount + 1;
+            push(result);
+          } else if(callee instanceof LoxCallable){
+            LoxCallable function = (LoxCallable)callee;
+            List<Object> arguments = new ArrayList<>(argCount);
+            for(int i = sp - argCount; i < sp; i++){
+              arguments.add(stack[i]);
+            }
+            checkArity(frame, ip, function, argCount);
+            // natives and classes don't need the tree-walker
+            frame.ip = ip;
+            Object result = function.call(null, arguments);
+            sp -= argCount + 1;
+            push(result);
+          } else {
+            throw error(frame, ip, "Can only call functions and classes");
+          }
+          break;
+        }
+        case OpCode.CLOSURE: {
+          Chunk.Function function = (Chunk.Function)constants[readShort(code, ip)];
+          ip += 2;
+          Upvalue[] upvalues = new Upvalue[function.upvalueIndex.length];
+          for(int i = 0; i < upvalues.length; i++){
+            int index = function.upvalueIndex[i];
+            upvalues[i] = function.upvalueLocal[i] ? capture(base + index) : frame.function.upvalues[index];
+          }
+          push(new VMFunction(function, upvalues, this));
+          break;
+        }
+        case OpCode.CLASS: {
+          Stmt.Class declaration = (Stmt.Class)constants[readShort(code, ip)];
+          int methodCount = declaration.methods.size();
+          ip += 2;
+          LoxCallable[] methods = new LoxCallable[methodCount];
+          System.arraycopy(stack, sp - methodCount, methods, 0, methodCount);
+          sp -= methodCount;
+          push(new LoxClass(declaration, methods));
+          break;
+        }
+        case OpCode.RETURN: {
+          Object result = pop();
+          closeUpvalues(base);
+          frameCount--;
+          // the callee goes too
+          sp = base - 1;
+          if(frameCount == exitDepth) return result;
+          push(result);
+          frame = frames[frameCount - 1];
+          code = frame.chunk.code;
+          constants = frame.chunk.constants;
+          ip = frame.ip;
+          base = frame.base;
+          break;
+        }
+
+        default:
+          throw error(frame, ip, "Unknown opcode " + instruction);
+      }
+    }
+  }
+
+  // one upvalue per slot, closures made in the same scope share it
+  private Upvalue capture(int slot){
+    Upvalue previous = null;
+    Upvalue upvalue = openUpvalues;
+    while(upvalue != null && upvalue.slot > slot){
+      previous = upvalue;
+      upvalue = upvalue.next;
+    }
+    if(upvalue != null && upvalue.slot == slot) return upvalue;
+
+    Upvalue created = new Upvalue(slot, upvalue);
+    if(previous == null){
+      openUpvalues = created;
+    } else {
+      previous.next = created;
+    }
+    return created;
+  }
+
+  // the slots from here up are going away, their upvalues keep the values
+  private void closeUpvalues(int from){
+    while(openUpvalues != null && openUpvalues.slot >= from){
+      Upvalue upvalue = openUpvalues;
+      upvalue.value = stack[upvalue.slot];
+      upvalue.slot = -1;
+      openUpvalues = upvalue.next;
+    }
+  }
+
+  private static int readShort(byte[] code, int offset){
+    return ((code[offset] & 0xff) << 8) | (code[offset + 1] & 0xff);
+  }
+
+  private void push(Object value){
+    if(sp == stack.length){
+      stack = Arrays.copyOf(stack, sp * 2);
+    }
+    stack[sp++] = value;
+  }
+
+  private Object pop(){
+    return stack[--sp];
+  }
+
+  private Object peek(int distance){
+    return stack[sp - 1 - distance];
+  }
+
+  private void checkNumberOperands(CallFrame frame, int ip){
+    if(peek(0) instanceof Double && peek(1) instanceof Double) return;
+    throw error(frame, ip, "Operand must be numbers");
+  }
+
+  private void checkArity(CallFrame frame, int ip, LoxCallable function, int argCount){
+    if(argCount != function.arity()){
+      throw error(frame, ip, "Expexted " + function.arity() + " arguments but got " + argCount);
+    }
+  }
+
+  private RunTimeError undefined(CallFrame frame, int ip, Environment.Global global){
+    return error(frame, ip, "Undefined variable '" + global.name + "'.");
+  }
+
+  private RunTimeError error(CallFrame frame, int ip, String message){
+    // the ip is past the instruction, its last byte has the same line
+    int line = frame.chunk.lines[ip - 1];
+    return new RunTimeError(new Token(TokenType.EOF, "", null, line), message);
+  }
+}
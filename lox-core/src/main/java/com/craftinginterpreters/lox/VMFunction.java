@@ -0,0 +1,35 @@
+package com.craftinginterpreters.lox;
+
+import java.util.List;
+
+/**
+ * A compiled function with the upvalues it captured when it was created.
+ */
+public class VMFunction implements LoxCallable {
+  final Chunk.Function function;
+  final VM.Upvalue[] upvalues;
+  private final VM vm;
+
+  VMFunction(Chunk.Function function, VM.Upvalue[] upvalues, VM vm){
+    this.function = function;
+    this.upvalues = upvalues;
+    this.vm = vm;
+  }
+
+  @Override
+  public int arity(){
+    return function.arity;
+  }
+
+  @Override
+  public Object call(Interpreter interpreter, List<Object> arguments){
+    // the VM calls us directly, this is only for callers outside of its loop
+    return vm.call(this, arguments);
+  }
+
+  @Override
+  public String toString(){
+    if(function.name == null) return "<fn>";
+    return "<fn " + function.name + ">";
+  }
+}
@@ -0,0 +1,61 @@
+package com.craftinginterpreters.lox;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.List;
+import org.junit.Assert;
+
+
+public class AstCacheTest {
+  private static final String SOURCE =
+    "fun f(a) { var b = a * 2; return b + 1; }\n" +
+    "class A { get() { return \"x\"; } }\n" +
+    "var c = f(3); while (c > 0) { c = c - 1; }";
+
+  private List<Stmt> parse(String source) {
+    List<Stmt> statements = new Parser(new Scanner(source).scanTokens()).parse();
+    new Resolver().resolve(statements);
+    return statements;
+  }
+
+  private byte[] write(byte[] hash, List<Stmt> statements) throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    AstCache.write(out, hash, statements);
+    return out.toByteArray();
+  }
+
+  @Test
+  public void testRoundTrip() throws IOException {
+    byte[] hash = AstCache.hash(SOURCE);
+    byte[] bytes = write(hash, parse(SOURCE));
+    List<Stmt> loaded = AstCache.read(new ByteArrayInputStream(bytes), hash);
+
+    Assert.assertNotNull(loaded);
+    // same tree, same resolution, same bytes
+    Assert.assertArrayEquals(bytes, write(hash, loaded));
+
+    Stmt.Function f = (Stmt.Function)loaded.get(0);
+    Stmt.Return ret = (Stmt.Return)f.function.body.get(1);
+    Expr.Variable b = (Expr.Variable)((Expr.Binary)ret.value).left;
+    Assert.assertEquals(0, b.depth);
+    Assert.assertEquals(1, b.slot);
+  }
+
+  @Test
+  public void testOtherSourceMisses() throws IOException {
+    byte[] bytes = write(AstCache.hash(SOURCE), parse(SOURCE));
+    Assert.assertNull(AstCache.read(new ByteArrayInputStream(bytes), AstCache.hash(SOURCE + " ")));
+  }
+
+  @Test(expected = IOException.class)
+  public void testCorruptCountIsNotAllocated() throws IOException {
+    byte[] hash = AstCache.hash(SOURCE);
+    byte[] bytes = write(hash, parse(SOURCE));
+    // the statement count, right after the magic, the version and the hash
+    bytes[8 + hash.length] = 0x7f;
+    AstCache.read(new ByteArrayInputStream(bytes), hash);
+  }
+}
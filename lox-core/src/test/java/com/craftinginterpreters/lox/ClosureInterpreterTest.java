@@ -0,0 +1,33 @@
+package com.craftinginterpreters.lox;
+
+import org.junit.Test;
+
+import org.junit.Assert;
+
+
+public class ClosureInterpreterTest {
+  private static final String SOURCE =
+      "fun fib(n){ if(n < 2) return n; return fib(n - 1) + fib(n - 2); }"
+    + "print fib(15);"
+    + "fun counter(){ var i = 0; fun count(){ i = i + 1; return i; } return count; }"
+    + "var c = counter(); c(); print c();"
+    + "class Point { sum(){ return 1; } } var p = Point(); p.x = 2; p.y = \"y\"; print p.x; print p.y + \"!\";"
+    + "var s = 0; for(var k = 0; k < 10; k = k + 1){ if(k == 5) break; s = s + k; } print s;"
+    + "print -(1 + 2) * 4 / 2; print \"a\" == \"a\"; print nil or \"default\";";
+
+  private static String closures() {
+    TestScripts.Printed printed = new TestScripts.Printed();
+    ClosureInterpreter interpreter = new ClosureInterpreter();
+    interpreter.setOutput(printed);
+    interpreter.interpret(TestScripts.resolve(SOURCE));
+    return printed.toString();
+  }
+
+  @Test
+  public void testSameOutputAsTreeWalker() {
+    String expected = TestScripts.treeWalker(SOURCE);
+
+    Assert.assertEquals("610\n2\n2\ny!\n10\n-6\ntrue\ndefault\n", expected);
+    Assert.assertEquals(expected, closures());
+  }
+}
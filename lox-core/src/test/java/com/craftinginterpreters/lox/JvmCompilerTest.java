@@ -0,0 +1,41 @@
+package com.craftinginterpreters.lox;
+
+import org.junit.Test;
+
+import java.util.List;
+import org.junit.Assert;
+
+
+public class JvmCompilerTest {
+  private static CompiledFunction compile(String source) {
+    List<Stmt> statements = new Parser(new Scanner(source).scanTokens()).parse();
+    new Resolver().resolve(statements);
+    Stmt.Function function = (Stmt.Function)statements.get(0);
+    Environment globals = new Environment();
+    LoxFunction lox = new LoxFunction(function.name.lexeme, function.function, globals);
+    globals.define(function.name.lexeme, lox);
+    return JvmCompiler.compile(lox, function.name.lexeme, function.function, globals);
+  }
+
+  @Test
+  public void testCompilesNumericFunctions() {
+    CompiledFunction fib = compile("fun fib(n){ if(n < 2) return n; return fib(n - 1) + fib(n - 2); }");
+    Assert.assertNotNull(fib);
+    Assert.assertEquals(55.0, fib.invoke(new double[]{10}), 0);
+
+    CompiledFunction sum = compile("fun sum(n){ var s = 0; for(var i = 0; i < n; i = i + 1){ if(i == 3 or (i == 5 and true)) break; s = s + i; } return s; }");
+    Assert.assertNotNull(sum);
+    Assert.assertEquals(3.0, sum.invoke(new double[]{10}), 0);
+  }
+
+  @Test
+  public void testLeavesTheRestToTheInterpreter() {
+    Assert.assertNull(compile("fun f(n){ print n; return n; }"));
+    Assert.assertNull(compile("fun f(n){ return \"n\"; }"));
+  }
+
+  @Test(expected = CompiledFunction.Deopt.class)
+  public void testDeoptimizesOnDivisionByZero() {
+    compile("fun f(n){ return 1 / n; }").invoke(new double[]{0});
+  }
+}
@@ -0,0 +1,66 @@
+package com.craftinginterpreters.lox;
+
+import org.junit.Test;
+
+import java.util.List;
+import org.junit.Assert;
+
+
+public class LoxEngineTest {
+  @Test
+  public void testContextIsReused() throws Exception {
+    CompiledScript script = new LoxEngine().compile(
+        "var total = 0; for(var i = 0; i < n; i = i + 1) total = total + i; print name + \"!\";");
+    Context context = new Context();
+    for(int n = 1; n <= 3; n++){
+      CompiledScript.Result result = script.execute(context.put("n", n).put("name", "run" + n));
+      Assert.assertTrue(result.succeeded());
+      Assert.assertEquals(List.of("run" + n + "!"), result.output());
+      Assert.assertEquals(n * (n - 1) / 2.0, result.get("total"));
+    }
+  }
+
+  @Test
+  public void testNothingIsLeftFromTheLastRun() throws Exception {
+    LoxEngine engine = new LoxEngine();
+    Context context = new Context();
+    Assert.assertTrue(engine.compile("var leftover = 1;").execute(context).succeeded());
+
+    CompiledScript.Result result = engine.compile("print leftover;").execute(context);
+    Assert.assertFalse(result.succeeded());
+    Assert.assertEquals("Undefined variable 'leftover'.", result.error());
+    Assert.assertEquals(1, result.line());
+    Assert.assertNull(result.get("leftover"));
+  }
+
+  @Test
+  public void testRunsShareShapes() throws Exception {
+    CompiledScript script = new LoxEngine().compile(
+        "class Point { sum(){ return 1; } } var p = Point(); p.x = 1; p.y = p.x + p.sum();");
+    Context context = new Context();
+    // a new class on each run, the same declaration, so the same shapes
+    LoxInstance first = (LoxInstance)script.execute(context).get("p");
+    LoxInstance second = (LoxInstance)script.execute(context).get("p");
+    LoxInstance other = (LoxInstance)script.execute(new Context()).get("p");
+    Assert.assertNotSame(first.klass, second.klass);
+    Assert.assertSame(first.shape, second.shape);
+    Assert.assertSame(first.shape, other.shape);
+    Assert.assertEquals(2.0, second.fields[1]);
+  }
+
+  @Test
+  public void testErrorsDoNotPileUp() throws Exception {
+    CompiledScript script = new LoxEngine().compile("print 1 + nil;");
+    Context context = new Context();
+    for(int i = 0; i < 2; i++){
+      CompiledScript.Result result = script.execute(context);
+      Assert.assertFalse(result.succeeded());
+      Assert.assertEquals(1, context.runtime.errors().size());
+    }
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testRejectsHostObjects() {
+    new Context().put("list", List.of());
+  }
+}
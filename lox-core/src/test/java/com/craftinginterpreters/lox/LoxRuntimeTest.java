@@ -0,0 +1,119 @@
+package com.craftinginterpreters.lox;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.junit.Assert;
+
+
+public class LoxRuntimeTest {
+  private static final String SOURCE =
+      "class Point { sum(){ return 1; } }"
+    + "var total = 0;"
+    + "for(var i = 0; i < 2000; i = i + 1){"
+    + "  var p = Point(); p.x = i; p.y = p.x * 2; total = total + p.x + p.y + p.sum();"
+    + "}"
+    + "print total;";
+
+  @Test
+  public void testScriptsRunInParallel() throws Exception {
+    LoxRuntime.Script script = LoxRuntime.parse(SOURCE);
+    ExecutorService pool = Executors.newFixedThreadPool(8);
+    try {
+      List<Future<List<String>>> runs = new ArrayList<>();
+      for(int i = 0; i < 32; i++){
+        runs.add(pool.submit(() -> {
+          List<String> printed = new ArrayList<>();
+          Assert.assertTrue(new LoxRuntime(printed::add).run(script));
+          return printed;
+        }));
+      }
+      for(Future<List<String>> run : runs){
+        Assert.assertEquals(List.of("5999000"), run.get());
+      }
+    } finally {
+      pool.shutdown();
+    }
+  }
+
+  @Test
+  public void testSharedCallSitesCallTheirOwnFunctions() throws Exception {
+    LoxRuntime.Script script = LoxRuntime.parse(
+        "var wrong = 0;"
+      + "for(var i = 0; i < 20000; i = i + 1){ if(f() != tag) wrong = wrong + 1; }"
+      + "print wrong;");
+    ExecutorService pool = Executors.newFixedThreadPool(2);
+    try {
+      List<Future<List<String>>> runs = new ArrayList<>();
+      for(String tag : new String[]{"a", "b"}){
+        runs.add(pool.submit(() -> {
+          List<String> printed = new ArrayList<>();
+          LoxRuntime runtime = new LoxRuntime(printed::add);
+          // same name, a different function in each runtime
+          Assert.assertTrue(runtime.run(LoxRuntime.parse(
+              "var tag = \"" + tag + "\"; fun f(){ return \"" + tag + "\"; }")));
+          for(int i = 0; i < 20; i++){
+            Assert.assertTrue(runtime.run(script));
+          }
+          return printed;
+        }));
+      }
+      for(Future<List<String>> run : runs){
+        for(String wrong : run.get()) Assert.assertEquals("0", wrong);
+      }
+    } finally {
+      pool.shutdown();
+    }
+  }
+
+  @Test
+  public void testErrorsStayWithTheirRuntime() throws Exception {
+    try {
+      LoxRuntime.parse("var a = ;");
+      Assert.fail();
+    } catch (LoxRuntime.ScriptError error) {
+      Assert.assertEquals(1, error.errors().size());
+    }
+    Assert.assertFalse(Lox.hadError);
+
+    LoxRuntime runtime = new LoxRuntime(line -> {});
+    Assert.assertFalse(runtime.run(LoxRuntime.parse("print 1 + nil;")));
+    Assert.assertEquals(1, runtime.errors().size());
+    Assert.assertFalse(Lox.hadRunTimeError);
+  }
+
+  @Test
+  public void testBreakInFunctionIsSyntaxError() throws Exception {
+    try {
+      LoxRuntime.parse("var i = 0; while (i < 3) { fun f() { break; } f(); i = i + 1; print i; } print \"done\";");
+      Assert.fail();
+    } catch (LoxRuntime.ScriptError error) {
+      Assert.assertEquals(1, error.errors().size());
+    }
+    // a loop inside the function is fine, and the outer one still counts after it
+    LoxRuntime.parse("while (true) { fun f() { while (true) break; } f(); break; }");
+  }
+
+  @Test
+  public void testScriptsHaveTheirOwnGlobalIndexes() throws Exception {
+    StringBuilder many = new StringBuilder();
+    for(int i = 0; i < 1000; i++) many.append("var g").append(i).append(" = ").append(i).append(";");
+    new LoxRuntime(line -> {}).run(LoxRuntime.parse(many.toString()));
+
+    List<String> printed = new ArrayList<>();
+    LoxRuntime runtime = new LoxRuntime(printed::add);
+    LoxRuntime.Script small = LoxRuntime.parse("var a = 1; print a;");
+    runtime.run(small);
+    // the natives and a, nothing from the other script
+    Assert.assertTrue(small.globals.size() < 20);
+
+    // a function of one script still finds the globals from another one
+    runtime.run(LoxRuntime.parse("fun f(){ return a + 1; }"));
+    runtime.run(LoxRuntime.parse("a = 5; print f();"));
+    Assert.assertEquals(List.of("1", "6"), printed);
+  }
+}
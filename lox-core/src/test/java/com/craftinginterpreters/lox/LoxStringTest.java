@@ -0,0 +1,32 @@
+package com.craftinginterpreters.lox;
+
+import org.junit.Test;
+
+import org.junit.Assert;
+
+
+public class LoxStringTest {
+  @Test
+  public void testShortConcatenationStaysAString() {
+    Assert.assertEquals("ab", LoxString.concat("a", "b"));
+  }
+
+  @Test
+  public void testLongConcatenationFlattensOnDemand() {
+    Object text = "";
+    StringBuilder expected = new StringBuilder();
+    // deep enough to blow the stack if flattening recursed
+    for(int i = 0; i < 100000; i++){
+      text = LoxString.concat(text, "x" + i);
+      expected.append("x").append(i);
+    }
+
+    Assert.assertTrue(text instanceof LoxString);
+    Assert.assertEquals(expected.length(), ((CharSequence)text).length());
+    Assert.assertEquals(expected.toString(), Interpreter.stringify(text));
+    Assert.assertTrue(Interpreter.isEqual(expected.toString(), text));
+    Assert.assertTrue(Interpreter.isEqual(text, expected.toString()));
+    Assert.assertEquals(expected.toString().hashCode(), text.hashCode());
+    Assert.assertFalse(Interpreter.isEqual(text, "x0"));
+  }
+}
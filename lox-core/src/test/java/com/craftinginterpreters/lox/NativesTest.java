@@ -0,0 +1,70 @@
+package com.craftinginterpreters.lox;
+
+import org.junit.Test;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.List;
+import org.junit.Assert;
+
+
+public class NativesTest {
+  private static CompiledScript.Result run(LoxEngine engine, String source) throws Exception {
+    return engine.compile(source).execute();
+  }
+
+  @Test
+  public void testStandardNatives() throws Exception {
+    CompiledScript.Result result = run(new LoxEngine(),
+        "print sqrt(16) + pow(2, 3); print len(\"hello\"); print substring(\"hello\", 1, 3) + str(max(1, 2));");
+    Assert.assertEquals(List.of("12", "5", "el2"), result.output());
+  }
+
+  @Test
+  public void testHostFunctions() throws Exception {
+    LoxEngine engine = new LoxEngine();
+    MethodHandles.Lookup lookup = MethodHandles.lookup();
+    engine.natives()
+        .define("hypot", lookup.findStatic(Math.class, "hypot",
+            MethodType.methodType(double.class, double.class, double.class)))
+        .define("repeat", lookup.findVirtual(String.class, "repeat",
+            MethodType.methodType(String.class, int.class)))
+        .define("sum4", 4, arguments -> {
+          double sum = 0;
+          for(Object argument : arguments) sum += Natives.number(argument);
+          return sum;
+        });
+    CompiledScript.Result result = run(engine,
+        "print hypot(3, 4); print repeat(\"ab\", 3); print sum4(1, 2, 3, 4);");
+    Assert.assertEquals(List.of("5", "ababab", "10"), result.output());
+  }
+
+  @Test
+  public void testHostResultsBecomeLoxValues() throws Exception {
+    LoxEngine engine = new LoxEngine();
+    MethodHandles.Lookup lookup = MethodHandles.lookup();
+    engine.natives()
+        .define("parse", lookup.findStatic(Integer.class, "valueOf",
+            MethodType.methodType(Integer.class, String.class)))
+        .define("seven", () -> 7)
+        .define("list", lookup.findStatic(List.class, "of", MethodType.methodType(List.class)));
+    CompiledScript.Result result = run(engine, "print parse(\"40\") + 2; print seven() * 2;\nprint list();");
+    Assert.assertEquals(List.of("42", "14"), result.output());
+    Assert.assertEquals("Not a Lox value: " + List.of().getClass().getName() + ".", result.error());
+    Assert.assertEquals(2, result.line());
+  }
+
+  @Test
+  public void testBadArgumentsAreRuntimeErrors() throws Exception {
+    LoxEngine engine = new LoxEngine();
+    engine.natives().define("div", MethodHandles.lookup().findStatic(Math.class, "floorDiv",
+        MethodType.methodType(int.class, int.class, int.class)));
+    CompiledScript.Result result = run(engine, "print 1;\nprint sqrt(\"x\");");
+    Assert.assertEquals("Expected a number but got x.", result.error());
+    Assert.assertEquals(2, result.line());
+
+    result = run(engine, "print div(7, 2);\nprint div(1, 0);");
+    Assert.assertEquals(List.of("3"), result.output());
+    Assert.assertEquals(2, result.line());
+  }
+}
@@ -0,0 +1,42 @@
+package com.craftinginterpreters.lox;
+
+import org.junit.Test;
+
+import java.util.List;
+import org.junit.Assert;
+
+
+public class OptimizerTest {
+  private List<Stmt> optimize(String source) {
+    List<Stmt> statements = new Parser(new Scanner(source).scanTokens()).parse();
+    new Resolver().resolve(statements);
+    return new Optimizer().optimize(statements);
+  }
+
+  @Test
+  public void testFoldsConstants() {
+    List<Stmt> statements = optimize("print (1 + 2) * 3 - 4 / 2; print \"a\" + (\"b\");");
+
+    Expr.Literal number = (Expr.Literal)((Stmt.Print)statements.get(0)).expression;
+    Assert.assertEquals(7.0, number.value);
+    Assert.assertTrue(number.numeric);
+    Expr.Literal string = (Expr.Literal)((Stmt.Print)statements.get(1)).expression;
+    Assert.assertEquals("ab", string.value);
+  }
+
+  @Test
+  public void testKeepsRuntimeErrors() {
+    List<Stmt> statements = optimize("print 1 / 0;");
+
+    Assert.assertTrue(((Stmt.Print)statements.get(0)).expression instanceof Expr.Binary);
+  }
+
+  @Test
+  public void testPrunesLiteralConditions() {
+    List<Stmt> statements = optimize("if (false) print 1; else print 2; while (false) print 3; for (;;) break;");
+
+    Assert.assertEquals(2, statements.size());
+    Assert.assertEquals(2.0, ((Expr.Literal)((Stmt.Print)statements.get(0)).expression).value);
+    Assert.assertNull(((Stmt.While)statements.get(1)).condition);
+  }
+}
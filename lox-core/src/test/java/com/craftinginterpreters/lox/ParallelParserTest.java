@@ -0,0 +1,57 @@
+package com.craftinginterpreters.lox;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import org.junit.Assert;
+
+
+public class ParallelParserTest {
+  private final ForkJoinPool pool = new ForkJoinPool(4);
+
+  @After
+  public void tearDown() {
+    pool.shutdown();
+    Lox.hadError = false;
+  }
+
+  private String script(int functions) {
+    StringBuilder source = new StringBuilder();
+    for(int i = 0; i < functions; i++) {
+      source.append("fun f").append(i).append("(a, b) { if (a > b) { return a - ").append(i).append("; } return b; }\n");
+      source.append("var v").append(i).append(" = f").append(i).append("(1, 2);\n");
+      source.append("class C").append(i).append(" { m() { print \"m\"; } }\n");
+    }
+    return source.toString();
+  }
+
+  private byte[] bytes(List<Stmt> statements) throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    AstCache.write(out, new byte[0], statements);
+    return out.toByteArray();
+  }
+
+  @Test
+  public void testSameTreeAsSequential() throws IOException {
+    TokenBuffer tokens = new Scanner(script(2000)).scan();
+    List<Stmt> sequential = new Parser(tokens).parse();
+    List<Stmt> parallel = ParallelParser.parse(tokens, pool);
+
+    Assert.assertEquals(sequential.size(), parallel.size());
+    Assert.assertArrayEquals(bytes(sequential), bytes(parallel));
+  }
+
+  @Test
+  public void testSyntaxErrorFallsBack() {
+    TokenBuffer tokens = new Scanner(script(1000) + "var broken = ;\n" + script(1000)).scan();
+    List<Stmt> parallel = ParallelParser.parse(tokens, pool);
+
+    Assert.assertTrue(Lox.hadError);
+    Assert.assertEquals(6001, parallel.size());
+    Assert.assertNull(parallel.get(3000));
+  }
+}
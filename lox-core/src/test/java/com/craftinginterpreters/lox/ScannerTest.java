@@ -2,6 +2,8 @@ package com.craftinginterpreters.lox;
 
 import org.junit.Test;
 
+import java.io.Reader;
+import java.io.StringReader;
 import java.util.Arrays;
 import java.util.List;
 import static com.craftinginterpreters.lox.TokenType.*;
@@ -118,4 +120,59 @@ public class ScannerTest {
         Assert.assertEquals(expectedTokens.get(i).type, tokens.get(i).type);
       }
   }
+
+  @Test
+  public void testTokenBuffer() {
+    String source = "var s = \"a\nb\"; 2.5;";
+    TokenBuffer tokens = new Scanner(source).scan();
+
+    Assert.assertEquals(8, tokens.size());
+    Assert.assertEquals(STRING, tokens.type(3));
+    Assert.assertEquals("\"a\nb\"", tokens.lexeme(3));
+    Assert.assertEquals("a\nb", tokens.literal(3));
+    Assert.assertEquals(2, tokens.line(3));
+    Assert.assertEquals(2.5, tokens.literal(5));
+    Assert.assertNull(tokens.literal(1));
+    Assert.assertEquals(EOF, tokens.type(7));
+  }
+
+  @Test
+  public void testStreamingScanner() {
+    String source = "var s = \"a long string\"; /* a\n comment */ fun f(x) { return x >= 1.5; } // end\nprint s;";
+    List<Token> expected = new Scanner(source).scanTokens();
+
+    // one char per read, every token crosses the window
+    Reader reader = new StringReader(source) {
+      @Override
+      public int read(char[] buffer, int offset, int length) throws java.io.IOException {
+        return super.read(buffer, offset, Math.min(length, 1));
+      }
+    };
+    TokenBuffer tokens = new Scanner(reader).tokens();
+
+    for(int i = 0; i < expected.size(); i++) {
+      Assert.assertEquals(expected.get(i).type, tokens.type(i));
+      Assert.assertEquals(expected.get(i).lexeme, tokens.lexeme(i));
+      Assert.assertEquals(expected.get(i).Literal, tokens.literal(i));
+      Assert.assertEquals(expected.get(i).line, tokens.line(i));
+    }
+    Assert.assertEquals(expected.size(), tokens.size());
+  }
+
+  @Test
+  public void testKeywords() {
+    String source = "and break class else false for fun if nil or print return super this true var while "
+      + "a f fo fort t th thiss _var var1 /* nested /* comment */ still */ whilE";
+    TokenBuffer tokens = new Scanner(source).scan();
+
+    TokenType[] expected = {
+      AND, BREAK, CLASS, ELSE, FALSE, FOR, FUN, IF, NIL, OR, PRINT, RETURN, SUPER, THIS, TRUE, VAR, WHILE,
+      IDENTIFIER, IDENTIFIER, IDENTIFIER, IDENTIFIER, IDENTIFIER, IDENTIFIER, IDENTIFIER, IDENTIFIER,
+      IDENTIFIER, IDENTIFIER, EOF
+    };
+    Assert.assertEquals(expected.length, tokens.size());
+    for(int i = 0; i < expected.length; i++) {
+      Assert.assertEquals(expected[i], tokens.type(i));
+    }
+  }
 }
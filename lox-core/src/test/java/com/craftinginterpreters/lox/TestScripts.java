@@ -0,0 +1,42 @@
+package com.craftinginterpreters.lox;
+
+import java.util.List;
+
+// the fixture of the tests that check a backend against the tree-walker
+final class TestScripts {
+  private TestScripts(){}
+
+  // scanned, parsed and resolved, like the command line does it
+  static List<Stmt> resolve(String source){
+    List<Stmt> statements = new Parser(new Scanner(source).scanTokens()).parse();
+    new Resolver().resolve(statements);
+    return statements;
+  }
+
+  // what a script printed, one line after the other
+  static final class Printed implements OutputSink {
+    private final StringBuilder printed = new StringBuilder();
+
+    @Override
+    public void println(String line){
+      printed.append(line).append('\n');
+    }
+
+    @Override
+    public void flush(){
+    }
+
+    @Override
+    public String toString(){
+      return printed.toString();
+    }
+  }
+
+  static String treeWalker(String source){
+    Printed printed = new Printed();
+    Interpreter interpreter = new Interpreter();
+    interpreter.setOutput(printed);
+    interpreter.interpreter(resolve(source));
+    return printed.toString();
+  }
+}
@@ -0,0 +1,48 @@
+package com.craftinginterpreters.lox;
+
+import org.junit.Test;
+
+import org.junit.Assert;
+
+
+public class VMTest {
+  private static final String SOURCE =
+      "fun counter(){ var i = 0; fun count(){ i = i + 1; return i; } return count; }"
+    + "var c = counter(); c(); var d = counter(); print c(); print d();"
+    + "fun outer(){ var a = 1; fun mid(){ var b = 2; fun inner(){ a = a + b; return a; } return inner; } return mid(); }"
+    + "var h = outer(); h(); print h();"
+    + "var f = nil; for(var i = 0; i < 3; i = i + 1){ var j = i; fun g(){ return j; } if(i == 1) f = g; } print f();"
+    + "var s = 0; for(var k = 0; k < 10; k = k + 1){ var sq = k * k; if(sq > 20) break; { var t = sq; s = s + t; } } print s;"
+    + "{ fun down(n){ if(n == 0) return \"done\"; return down(n - 1); } print down(3); }"
+    + "{ class Local { m(){ return \"m\"; } } var o = Local(); print o.m(); }";
+  private static final String BREAK_IN_FUNCTION =
+      "var i = 0; while (i < 3) { fun f() { break; } f(); i = i + 1; print i; } print \"done\";";
+
+  private static String vm() {
+    TestScripts.Printed printed = new TestScripts.Printed();
+    VM machine = new VM();
+    machine.setOutput(printed);
+    machine.interpret(new Compiler().compile(TestScripts.resolve(SOURCE)));
+    return printed.toString();
+  }
+
+  @Test
+  public void testLocalsAndUpvalues() {
+    String expected = TestScripts.treeWalker(SOURCE);
+
+    Assert.assertEquals("2\n1\n5\n1\n30\ndone\nm\n", expected);
+    Assert.assertEquals(expected, vm());
+  }
+
+  @Test
+  public void testBreakInFunctionIsCompileError() {
+    ErrorReporter errors = new ErrorReporter();
+    ErrorReporter previous = Lox.install(errors);
+    try {
+      new Compiler().compile(TestScripts.resolve(BREAK_IN_FUNCTION));
+    } finally {
+      Lox.install(previous);
+    }
+    Assert.assertTrue(errors.hadError);
+  }
+}
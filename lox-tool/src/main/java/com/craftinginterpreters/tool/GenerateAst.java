@@ -12,23 +12,23 @@ public class GenerateAst {
     }
     String outputDir = args[0];
 
-    defineAst(outputDir, "Expr", Arrays.asList(
-      "Assign: Token name, Expr value",
-      "Binary     : Expr left, Token operator, Expr right",
-      "Function   : List<Token> params, List<Stmt> body",
+    defineAst(outputDir, "Expr", "boolean numeric = false", Arrays.asList(
+      "Assign: Token name, Expr value ; int depth = -1, int slot = 0, Environment.Global global = null",
+      "Binary     : Expr left, Token operator, Expr right ; Specialization specialization = Specialization.UNINITIALIZED",
+      "Function   : List<Token> params, List<Stmt> body ; int slots = 0",
       "Call       : Expr callee, Token paren, List<Expr> arguments",
-      "Get        : Expr object, Token name",
-      "Set        : Expr object, Token name, Expr value",
+      "Get        : Expr object, Token name ; InlineCache cache = new InlineCache()",
+      "Set        : Expr object, Token name, Expr value ; InlineCache cache = new InlineCache()",
       "Grouping   : Expr expression",
       "Literal    : Object value",
-      "Unary      : Token operator, Expr right",
-      "Variable   : Token name",
+      "Unary      : Token operator, Expr right ; Specialization specialization = Specialization.UNINITIALIZED",
+      "Variable   : Token name ; int depth = -1, int slot = 0, Environment.Global global = null",
       "Logical    : Expr left, Token operator, Expr right"
     ));
 
-    defineAst(outputDir, "Stmt", Arrays.asList(
+    defineAst(outputDir, "Stmt", "", Arrays.asList(
       "Block      : List<Stmt> statements",
-      "Class      : Token name, List<Stmt.Function> methods",
+      "Class      : Token name, List<Stmt.Function> methods ; Shape shape = new Shape()",
       "Break      : ",
       "Expression : Expr expression",
       "Function   : Token name, Expr.Function function",
@@ -40,7 +40,7 @@ public class GenerateAst {
     ));
   }
 
-  private static void defineAst( String outputDir, String baseName, List<String> types ) throws IOException {
+  private static void defineAst( String outputDir, String baseName, String baseFields, List<String> types ) throws IOException {
     String path = outputDir + "/" + baseName + ".java";
     PrintWriter writer = new PrintWriter(path, "UTF-8");
 
@@ -55,8 +55,19 @@ public class GenerateAst {
     // the AST classes
     for(String type : types){
       String className = type.split(":")[0].trim();
-      String fields = type.split(":")[1].trim();
-      defineType(writer, baseName, className, fields);
+      // after ';' come the fields filled later (by the resolver), with their default
+      String[] parts = type.split(":")[1].split(";");
+      String fields = parts[0].trim();
+      String mutableFields = parts.length > 1 ? parts[1].trim() : "";
+      defineType(writer, baseName, className, fields, mutableFields);
+    }
+
+    // fields shared by every node, filled after parsing
+    if(!baseFields.isEmpty()){
+      writer.println();
+      for(String field : baseFields.split(", ")){
+        writer.println("  " + field + ";");
+      }
     }
 
     // the base acctpt method
@@ -69,7 +80,7 @@ public class GenerateAst {
     writer.close();
   }
 
-  private static void defineType(PrintWriter writer, String baseName, String className, String fieldList){
+  private static void defineType(PrintWriter writer, String baseName, String className, String fieldList, String mutableFieldList){
     writer.println("  static class " + className + " extends " + baseName + " {");
 
     // constructor
@@ -103,6 +114,11 @@ public class GenerateAst {
     for(String field: fields){
       writer.println("    final " + field + ";");
     }
+    if(!mutableFieldList.isEmpty()){
+      for(String field : mutableFieldList.split(", ")){
+        writer.println("    " + field + ";");
+      }
+    }
 
     writer.println("  }");
     writer.println();
@@ -1,7 +0,0 @@
-package com.craftinginterpreters.lox;
-import java.util.List;
-
-public interface LoxCallable {
-  int arity();
-  Object call(Interpreter interpreter, List<Object> arguments);
-}
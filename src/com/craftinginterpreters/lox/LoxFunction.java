@@ -1,47 +0,0 @@
-package com.craftinginterpreters.lox;
-import java.util.List;
-
-public class LoxFunction implements LoxCallable {
-  private final String name;
-  private final Expr.Function declaration;
-  private final Environment closure;
-
-  LoxFunction(String name, Expr.Function declaration, Environment closure){
-    this.name = name;
-    this.declaration = declaration;
-    this.closure = closure;
-  }
-
-  @Override
-  public String toString(){
-    if(name == null) return "<fn>";
-    return "<fn " + name + ">";
-  }
-
-
-  @Override
-  public int arity() {
-    return declaration.params.size();
-  }
-
-
-  @Override
-  public Object call(Interpreter interpreter, List<Object> arguments) {
-    
-
-    Environment environment = new Environment(closure);
-
-    for(int i = 0; i < declaration.params.size(); i++){
-      environment.define(declaration.params.get(i).lexeme, arguments.get(i));
-    }
-
-    try {
-      interpreter.executeBlock(declaration.body, environment);
-    } catch (Return returnValue) {
-      return returnValue.value;
-    }
-
-    return null;
-  }
-  
-}
@@ -1,34 +0,0 @@
-package com.craftinginterpreters.lox;
-
-import java.util.Map;
-import java.util.HashMap;
-
-
-public class LoxInstance {
-  private LoxClass klass;
-
-  private final Map<String, Object> fields = new HashMap<>();
-
-  LoxInstance(LoxClass klass){
-    this.klass = klass;
-  }
-
-  Object get(Token name){
-    if(fields.containsKey(name.lexeme)){
-      return fields.get(name.lexeme);
-    }
-
-    LoxFunction method = klass.findMethod(name.lexeme);
-    if(method != null) return method;
-    throw new RunTimeError(name, "Undefined property '" + name.lexeme + "'.");
-  }
-
-  void set(Token name, Object value){
-    fields.put(name.lexeme, value);
-  }
-
-  @Override
-  public String toString(){
-    return klass.name + " instance";
-  }
-}